@@ -0,0 +1,43 @@
+package me.white.justice.benchmark;
+
+import me.white.justice.ParsingException;
+import me.white.justice.lexer.Lexer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class LexerBenchmark {
+    @Param({ "100", "1000" })
+    public int handlers;
+    @Param({ "3" })
+    public int depth;
+    private String source;
+
+    // items are left out, snbt is only tokenized through the parser
+    @Setup
+    public void setup() {
+        source = new ModuleGenerator(handlers, depth, 0).generate();
+    }
+
+    // the returned token count lets throughput be read as tokens per second
+    @Benchmark
+    public int tokens(Blackhole blackhole) throws ParsingException {
+        Lexer lexer = new Lexer(source);
+        int count = 0;
+        while (lexer.hasNext()) {
+            blackhole.consume(lexer.read());
+            count += 1;
+        }
+        return count;
+    }
+
+    // fills the primitive token stream without creating token objects
+    @Benchmark
+    public int tokenStream() throws ParsingException {
+        return new Lexer(source).tokenize().size();
+    }
+}
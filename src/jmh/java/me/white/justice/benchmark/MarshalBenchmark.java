@@ -0,0 +1,49 @@
+package me.white.justice.benchmark;
+
+import me.white.justice.Marshal;
+import me.white.justice.MarshalException;
+import me.white.justice.Parser;
+import me.white.justice.ParsingException;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MarshalBenchmark {
+    @Param({ "100", "1000" })
+    public int handlers;
+    @Param({ "1", "3" })
+    public int depth;
+    @Param({ "0", "4" })
+    public int items;
+    private String module;
+
+    @Setup
+    public void setup() throws ParsingException, IOException {
+        Parser parser = new Parser();
+        parser.parse(new ModuleGenerator(handlers, depth, items).generate());
+        StringWriter writer = new StringWriter();
+        parser.write(writer);
+        module = writer.toString();
+    }
+
+    @Benchmark
+    public Marshal marshal() throws MarshalException {
+        Marshal marshal = new Marshal();
+        marshal.marshal(module);
+        return marshal;
+    }
+
+    @Benchmark
+    public String marshalAndWrite() throws MarshalException, IOException {
+        Marshal marshal = new Marshal();
+        marshal.marshal(module);
+        StringWriter writer = new StringWriter();
+        marshal.write(writer);
+        return writer.toString();
+    }
+}
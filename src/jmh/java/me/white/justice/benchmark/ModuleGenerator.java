@@ -0,0 +1,84 @@
+package me.white.justice.benchmark;
+
+import java.util.Random;
+
+// builds deterministic synthetic sources, so benchmark runs stay comparable
+public class ModuleGenerator {
+    private static final String[] HANDLER_TYPES = new String[]{ "", "event ", "process " };
+    private final int handlers;
+    private final int depth;
+    private final int items;
+    private final Random random;
+
+    public ModuleGenerator(int handlers, int depth, int items, long seed) {
+        this.handlers = handlers;
+        this.depth = depth;
+        this.items = items;
+        this.random = new Random(seed);
+    }
+
+    public ModuleGenerator(int handlers, int depth, int items) {
+        this(handlers, depth, items, 0x1CE);
+    }
+
+    public String generate() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < handlers; ++i) {
+            builder.append(HANDLER_TYPES[random.nextInt(HANDLER_TYPES.length)]);
+            builder.append("handler_").append(i).append(" {\n");
+            for (int j = 0; j < items; ++j) {
+                indent(builder, 1);
+                builder.append("player_give_items(items={ ").append(item(i, j)).append(" });\n");
+            }
+            generateOperations(builder, 1);
+            builder.append("}\n\n");
+        }
+        return builder.toString();
+    }
+
+    private void generateOperations(StringBuilder builder, int level) {
+        int count = 2 + random.nextInt(4);
+        for (int i = 0; i < count; ++i) {
+            indent(builder, level);
+            if (level < depth && random.nextInt(3) == 0) {
+                builder.append(random.nextBoolean() ? "if_variable_equals" : "not if_player_has_item");
+                builder.append("(value=").append(value()).append(") {\n");
+                generateOperations(builder, level + 1);
+                indent(builder, level);
+                builder.append("}\n");
+            } else {
+                builder.append("set_variable_").append(random.nextInt(16));
+                builder.append("(variable=var_").append(random.nextInt(64));
+                int arguments = random.nextInt(4);
+                for (int j = 0; j < arguments; ++j) {
+                    builder.append(", argument_").append(j).append("=").append(value());
+                }
+                builder.append(");\n");
+            }
+        }
+    }
+
+    private String value() {
+        return switch (random.nextInt(9)) {
+            case 0 -> Double.toString(random.nextInt(10000) / 100.0);
+            case 1 -> "\"text " + random.nextInt(1000) + " with \\\"quotes\\\"\"";
+            case 2 -> "l\"&aColored " + random.nextInt(100) + "\"";
+            case 3 -> "g`game variable " + random.nextInt(100) + "`";
+            case 4 -> "<default>current_health";
+            case 5 -> "location{ " + random.nextInt(100) + ", 64, " + random.nextInt(100) + ", 90, 0 }";
+            case 6 -> "'TRUE'";
+            case 7 -> "%player_name%";
+            default -> "{ 1, 2, \"three\", var_" + random.nextInt(64) + " }";
+        };
+    }
+
+    private static String item(int handler, int index) {
+        return "item{ id: diamond_sword, count: 1, components: { item_name: \"Item " + handler + "-" + index + "\", "
+                + "lore: [\"first line\", \"second line\"], enchantments: { levels: { sharpness: 5, unbreaking: 3 } }, "
+                + "custom_data: { handler: " + handler + ", index: " + index + "s, ratio: 0.5d, bytes: [B; 1B, 2B, 3B] } } }";
+    }
+
+    private static void indent(StringBuilder builder, int level) {
+        builder.append("    ".repeat(level));
+    }
+}
@@ -0,0 +1,80 @@
+package me.white.justice.benchmark;
+
+import me.white.justice.Handler;
+import me.white.justice.ParsedSource;
+import me.white.justice.Parser;
+import me.white.justice.ParsingException;
+import me.white.justice.SymbolTable;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ParserBenchmark {
+    @Param({ "100", "1000" })
+    public int handlers;
+    @Param({ "1", "3" })
+    public int depth;
+    @Param({ "0", "4" })
+    public int items;
+    private String source;
+    private Parser parsed;
+    private ParsedSource parsedSource;
+    private int editOffset;
+
+    @Setup
+    public void setup() throws ParsingException {
+        source = new ModuleGenerator(handlers, depth, items).generate();
+        parsed = parse();
+        parsedSource = ParsedSource.parse(source, new SymbolTable());
+        editOffset = source.indexOf('"', source.length() / 2) + 1;
+    }
+
+    @Benchmark
+    public Parser parse() throws ParsingException {
+        Parser parser = new Parser();
+        parser.parse(source);
+        return parser;
+    }
+
+    // splits the source between handlers and parses the parts on the common pool
+    @Benchmark
+    public List<Handler> parseParallel() throws ParsingException {
+        return Parser.parseHandlers(source, new SymbolTable(), ForkJoinPool.commonPool());
+    }
+
+    @Benchmark
+    public String parseAndWrite() throws ParsingException, IOException {
+        Parser parser = new Parser();
+        parser.parse(source);
+        StringWriter writer = new StringWriter();
+        parser.write(writer);
+        return writer.toString();
+    }
+
+    // types a character into a string of a handler in the middle, only that handler is parsed again
+    @Benchmark
+    public ParsedSource edit() {
+        return parsedSource.edit(editOffset, 0, "x");
+    }
+
+    // emits an already parsed module into a discarding stream, measuring only the json output
+    @Benchmark
+    public void write() throws IOException {
+        parsed.write(OutputStream.nullOutputStream());
+    }
+
+    // the same with handlers rendered on the common pool and concatenated in order
+    @Benchmark
+    public void writeParallel() throws IOException {
+        parsed.write(Channels.newChannel(OutputStream.nullOutputStream()), ForkJoinPool.commonPool());
+    }
+}
@@ -0,0 +1,81 @@
+package me.white.justice.benchmark;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import me.white.justice.JsonEmitter;
+import me.white.justice.MarshalException;
+import me.white.justice.ParsingException;
+import me.white.justice.SymbolTable;
+import me.white.justice.lexer.Lexer;
+import me.white.justice.value.ItemValue;
+import me.white.justice.value.Value;
+import me.white.justice.value.ValueType;
+import net.querz.nbt.tag.CompoundTag;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ValueBenchmark {
+    private static final String ITEM = "item{ id: diamond_sword, count: 1, components: { item_name: \"Sword\", "
+            + "lore: [\"first line\", \"second line\"], enchantments: { levels: { sharpness: 5, unbreaking: 3 } }, "
+            + "custom_data: { ratio: 0.5d, bytes: [B; 1B, 2B, 3B], longs: [L; 1L, 2L] } } }";
+    private static final String TEXT = "Some \"quoted\" text with \\ backslashes\nand a second line";
+    private ItemValue item;
+    private JsonObject itemJson;
+    private final SymbolTable symbols = new SymbolTable();
+
+    @Setup
+    public void setup() throws ParsingException, IOException {
+        item = (ItemValue)snbtToItem();
+        itemJson = JsonParser.parseString(itemToNbt()).getAsJsonObject();
+    }
+
+    @Benchmark
+    public Value snbtToItem() throws ParsingException {
+        Lexer lexer = new Lexer(ITEM);
+        lexer.read();
+        return ValueType.ITEM.parse(lexer, new SymbolTable());
+    }
+
+    @Benchmark
+    public String itemToSnbt() throws IOException {
+        StringWriter writer = new StringWriter();
+        item.write(writer);
+        return writer.toString();
+    }
+
+    @Benchmark
+    public String itemToNbt() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (JsonEmitter json = new JsonEmitter(Channels.newChannel(output), 512)) {
+            item.writeJson(json);
+        }
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Value nbtToItem() throws MarshalException {
+        return ValueType.ITEM.marshal(itemJson, symbols);
+    }
+
+    // marshalled items stay encoded, this includes the decoding that writing a source needs
+    @Benchmark
+    public CompoundTag nbtToItemTag() throws MarshalException {
+        return ((ItemValue)ValueType.ITEM.marshal(itemJson, symbols)).getTag();
+    }
+
+    @Benchmark
+    public String writeEnclosed() throws IOException {
+        StringWriter writer = new StringWriter();
+        Value.writeEnclosed(writer, TEXT, "\"");
+        return writer.toString();
+    }
+}
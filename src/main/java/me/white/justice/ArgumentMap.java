@@ -0,0 +1,175 @@
+package me.white.justice;
+
+import me.white.justice.value.Value;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+// keeps the few arguments of an operation in insertion order in parallel arrays
+// only large argument lists get a hash index for lookups
+public class ArgumentMap extends AbstractMap<String, Value> {
+    private static final int INDEX_THRESHOLD = 8;
+    private String[] keys;
+    private Value[] values;
+    private int size = 0;
+    @Nullable
+    private Map<String, Integer> index = null;
+
+    public ArgumentMap() {
+        this(4);
+    }
+
+    public ArgumentMap(int capacity) {
+        keys = new String[capacity];
+        values = new Value[capacity];
+    }
+
+    private int indexOf(Object key) {
+        if (index != null) {
+            Integer i = index.get(key);
+            return i == null ? -1 : i;
+        }
+        for (int i = 0; i < size; ++i) {
+            // argument names are interned, so the identity check usually decides
+            if (keys[i] == key || keys[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void reindex() {
+        if (size <= INDEX_THRESHOLD) {
+            index = null;
+            return;
+        }
+        index = new HashMap<>(size * 2);
+        for (int i = 0; i < size; ++i) {
+            index.put(keys[i], i);
+        }
+    }
+
+    public String getKey(int i) {
+        Objects.checkIndex(i, size);
+        return keys[i];
+    }
+
+    public Value getValue(int i) {
+        Objects.checkIndex(i, size);
+        return values[i];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) != -1;
+    }
+
+    @Override
+    public Value get(Object key) {
+        int i = indexOf(key);
+        return i == -1 ? null : values[i];
+    }
+
+    // a repeated argument keeps its place and takes the new value
+    @Override
+    public Value put(String key, Value value) {
+        int i = indexOf(key);
+        if (i != -1) {
+            Value previous = values[i];
+            values[i] = value;
+            return previous;
+        }
+        if (size == keys.length) {
+            int capacity = Math.max(4, size * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        keys[size] = key;
+        values[size] = value;
+        size += 1;
+        if (index != null) {
+            index.put(key, size - 1);
+        } else if (size > INDEX_THRESHOLD) {
+            reindex();
+        }
+        return null;
+    }
+
+    @Override
+    public Value remove(Object key) {
+        int i = indexOf(key);
+        if (i == -1) {
+            return null;
+        }
+        Value previous = values[i];
+        removeAt(i);
+        return previous;
+    }
+
+    private void removeAt(int i) {
+        System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+        System.arraycopy(values, i + 1, values, i, size - i - 1);
+        size -= 1;
+        keys[size] = null;
+        values[size] = null;
+        if (index != null) {
+            reindex();
+        }
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(keys, 0, size, null);
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+        index = null;
+    }
+
+    @Override
+    public Set<Entry<String, Value>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public Iterator<Entry<String, Value>> iterator() {
+                return new Iterator<>() {
+                    private int next = 0;
+                    private boolean canRemove = false;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < size;
+                    }
+
+                    @Override
+                    public Entry<String, Value> next() {
+                        if (next >= size) {
+                            throw new NoSuchElementException();
+                        }
+                        canRemove = true;
+                        next += 1;
+                        return new SimpleImmutableEntry<>(keys[next - 1], values[next - 1]);
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (!canRemove) {
+                            throw new IllegalStateException();
+                        }
+                        canRemove = false;
+                        next -= 1;
+                        removeAt(next);
+                    }
+                };
+            }
+        };
+    }
+}
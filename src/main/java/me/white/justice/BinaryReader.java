@@ -0,0 +1,159 @@
+package me.white.justice;
+
+import me.white.justice.value.Value;
+import me.white.justice.value.ValueType;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BinaryReader implements Closeable {
+    private final CountingInputStream counter;
+    private final DataInputStream input;
+    private final long length;
+    private final List<String> strings = new ArrayList<>();
+
+    // sizes are checked against the length, so a damaged module fails to read instead of allocating whatever it claims
+    public BinaryReader(InputStream input, long length) throws IOException {
+        this.counter = new CountingInputStream(new BufferedInputStream(input));
+        this.input = new DataInputStream(counter);
+        this.length = length;
+        if (this.input.readInt() != BinaryWriter.MAGIC) {
+            throw new IOException("Not a binary module");
+        }
+        int version = readVarInt();
+        if (version != BinaryWriter.VERSION) {
+            throw new IOException("Unsupported binary module version " + version);
+        }
+    }
+
+    public List<Handler> readHandlers() throws IOException {
+        int size = readSize();
+        List<Handler> handlers = new ArrayList<>(size);
+        for (int i = 0; i < size; ++i) {
+            handlers.add(Handler.readBinary(this));
+        }
+        return handlers;
+    }
+
+    public Value readValue() throws IOException {
+        return readEnum(ValueType.values()).read(this);
+    }
+
+    public int readVarInt() throws IOException {
+        long value = readVarLong();
+        if ((value & ~0xFFFFFFFFL) != 0) {
+            throw new IOException("Malformed varint");
+        }
+        return (int)value;
+    }
+
+    public long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int read = input.readUnsignedByte();
+            value |= (long)(read & 0x7F) << shift;
+            if ((read & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    // every element takes at least a byte, so no size is larger than what is left to read
+    public int readSize() throws IOException {
+        int size = readVarInt();
+        if (size < 0 || size > length - counter.count) {
+            throw new IOException("Malformed size");
+        }
+        return size;
+    }
+
+    public int readInt() throws IOException {
+        int value = readVarInt();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public boolean readBoolean() throws IOException {
+        return input.readBoolean();
+    }
+
+    public <T extends Enum<T>> T readEnum(T[] values) throws IOException {
+        int ordinal = readVarInt();
+        if (ordinal < 0 || ordinal >= values.length) {
+            throw new IOException("Invalid " + values.getClass().getComponentType().getSimpleName());
+        }
+        return values[ordinal];
+    }
+
+    public double readDouble() throws IOException {
+        long value = readVarLong();
+        if ((value & 1) != 0) {
+            return input.readDouble();
+        }
+        value >>>= 1;
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public String readString() throws IOException {
+        int index = readVarInt();
+        if (index == 0) {
+            return null;
+        }
+        if (index == 1) {
+            String string = new String(readBytes(), StandardCharsets.UTF_8);
+            strings.add(string);
+            return string;
+        }
+        index -= 2;
+        if (index < 0 || index >= strings.size()) {
+            throw new IOException("Invalid string reference");
+        }
+        return strings.get(index);
+    }
+
+    public byte[] readBytes() throws IOException {
+        byte[] bytes = new byte[readSize()];
+        input.readFully(bytes);
+        return bytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        private long count = 0;
+
+        private CountingInputStream(InputStream input) {
+            super(input);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = in.read();
+            if (read != -1) {
+                count += 1;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            int read = in.read(bytes, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long length) throws IOException {
+            long skipped = in.skip(length);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
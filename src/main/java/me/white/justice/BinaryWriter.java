@@ -0,0 +1,100 @@
+package me.white.justice;
+
+import me.white.justice.value.Value;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// compact versioned encoding of parsed handlers
+// strings are written once and then referenced by their index, integers are zigzag varints
+public class BinaryWriter implements Closeable {
+    public static final int MAGIC = 0x4A494345;
+    public static final int VERSION = 2;
+    private final DataOutputStream output;
+    private final Map<String, Integer> strings = new HashMap<>();
+
+    public BinaryWriter(OutputStream output) throws IOException {
+        this.output = new DataOutputStream(new BufferedOutputStream(output));
+        this.output.writeInt(MAGIC);
+        writeVarInt(VERSION);
+    }
+
+    public void writeHandlers(List<Handler> handlers) throws IOException {
+        writeVarInt(handlers.size());
+        for (Handler handler : handlers) {
+            handler.writeBinary(this);
+        }
+    }
+
+    public void writeValue(Value value) throws IOException {
+        value.writeBinary(this);
+    }
+
+    public void writeVarInt(int value) throws IOException {
+        writeVarLong(value & 0xFFFFFFFFL);
+    }
+
+    public void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.writeByte((int)(value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte((int)value);
+    }
+
+    public void writeInt(int value) throws IOException {
+        writeVarInt((value << 1) ^ (value >> 31));
+    }
+
+    public void writeBoolean(boolean value) throws IOException {
+        output.writeBoolean(value);
+    }
+
+    public void writeEnum(Enum<?> value) throws IOException {
+        writeVarInt(value.ordinal());
+    }
+
+    // most numbers in modules are small integers, those take a varint instead of 8 bytes
+    public void writeDouble(double value) throws IOException {
+        long integer = (long)value;
+        if (integer == value && integer > -(1L << 53) && integer < (1L << 53) && Double.doubleToRawLongBits(value) != Double.doubleToRawLongBits(-0.0)) {
+            writeVarLong(((integer << 1) ^ (integer >> 63)) << 1);
+        } else {
+            writeVarLong(1);
+            output.writeDouble(value);
+        }
+    }
+
+    // 0 is null, 1 is a new string followed by its bytes, anything above references an earlier string
+    public void writeString(String string) throws IOException {
+        if (string == null) {
+            writeVarInt(0);
+            return;
+        }
+        Integer index = strings.get(string);
+        if (index != null) {
+            writeVarInt(index + 2);
+            return;
+        }
+        strings.put(string, strings.size());
+        writeVarInt(1);
+        writeBytes(string.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public void writeBytes(byte[] bytes) throws IOException {
+        writeVarInt(bytes.length);
+        output.write(bytes);
+    }
+
+    public void flush() throws IOException {
+        output.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        output.close();
+    }
+}
@@ -0,0 +1,182 @@
+package me.white.justice;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// serves newline-delimited json requests, so repeated builds skip jvm startup and warmup
+//   -> {"id": 1, "command": "parse", "files": ["main.ice"], "compact": false, "output": "result.json"}
+//   <- {"id": 1, "success": true, "output": "result.json", "diagnostics": []}
+// without "output" the module is returned in "result", "shutdown" stops the daemon
+public class Daemon {
+    private static final String WARMUP_SOURCE = """
+            event player_join {
+                player_send_message(messages={ l"&b&oWelcome!", `message`, g`%player%@count`, 'TRUE', %players_online% });
+                not if_player_name_equals(names={ "lemonhead2000" }) {
+                    call_function(function_name="gift");
+                }
+            }
+
+            gift {
+                repeat_while if_game_has_player(names_or_uuids={ <default>name }) {
+                    control_wait(duration=2);
+                    player_give_items(items={ item{ id: diamond, count: 1, components: { item_name: "Gem" } } });
+                    set_variable(a=location{ 0, -64, 0 }, b=vector{ 0, 1, 0 }, c=sound{ "entity.player.death" }, d=potion{ "speed" });
+                }
+            }
+            """;
+    private final BufferedReader input;
+    private final Writer output;
+
+    public Daemon(Reader input, Writer output) {
+        this.input = new BufferedReader(input);
+        this.output = output;
+    }
+
+    public void run() throws IOException {
+        warmUp();
+        String line;
+        while ((line = input.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            JsonObject response = new JsonObject();
+            boolean isShutdown = handle(line, response);
+            output.write(response.toString());
+            output.write("\n");
+            output.flush();
+            if (isShutdown) {
+                return;
+            }
+        }
+    }
+
+    // loads the value type tables, gson and nbt classes before the first request comes in
+    static void warmUp() {
+        try {
+            Parser parser = new Parser();
+            parser.parse(WARMUP_SOURCE);
+            StringWriter module = new StringWriter();
+            parser.write(module);
+            Marshal.marshal(new StringReader(module.toString()), new SymbolTable(), Writer.nullWriter());
+        } catch (ParsingException | MarshalException | IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private boolean handle(String line, JsonObject response) {
+        JsonArray diagnostics = new JsonArray();
+        String result = null;
+        boolean isShutdown = false;
+        try {
+            JsonObject request = JsonParser.parseString(line).getAsJsonObject();
+            if (request.has("id")) {
+                response.add("id", request.get("id"));
+            }
+            String command = Marshal.jsonGet(request, "command").getAsString();
+            switch (command) {
+                case "parse" -> result = parse(getPaths(request), request.has("compact") && request.get("compact").getAsBoolean(), diagnostics);
+                case "marshal" -> result = marshal(getPaths(request), diagnostics);
+                case "shutdown" -> isShutdown = true;
+                default -> diagnostics.add(diagnostic(null, "Unknown command '" + command + "'"));
+            }
+            if (result != null && request.has("output")) {
+                String out = request.get("output").getAsString();
+                try (Writer writer = Files.newBufferedWriter(Path.of(out))) {
+                    writer.write(result);
+                    response.addProperty("output", out);
+                } catch (IOException | InvalidPathException e) {
+                    diagnostics.add(diagnostic(null, "Could not write file '" + out + "': " + e.getMessage()));
+                }
+                result = null;
+            }
+        } catch (JsonParseException | IllegalStateException | UnsupportedOperationException | MarshalException e) {
+            diagnostics.add(diagnostic(null, "Malformed request: " + e.getMessage()));
+        }
+        response.addProperty("success", diagnostics.isEmpty());
+        if (result != null) {
+            response.addProperty("result", result);
+        }
+        response.add("diagnostics", diagnostics);
+        return isShutdown;
+    }
+
+    private static List<Path> getPaths(JsonObject request) throws MarshalException {
+        List<Path> paths = new ArrayList<>();
+        for (JsonElement element : Marshal.jsonGet(request, "files").getAsJsonArray()) {
+            try {
+                paths.add(Path.of(element.getAsString()));
+            } catch (InvalidPathException e) {
+                throw new MarshalException("Invalid file path '" + element.getAsString() + "'");
+            }
+        }
+        return paths;
+    }
+
+    private static JsonObject diagnostic(Path path, String message) {
+        JsonObject diagnostic = new JsonObject();
+        if (path != null) {
+            diagnostic.addProperty("file", path.toString());
+        }
+        diagnostic.addProperty("message", message);
+        return diagnostic;
+    }
+
+    private static String parse(List<Path> paths, boolean isCompact, JsonArray diagnostics) {
+        Parser parser = new Parser();
+        parser.setCompact(isCompact);
+        for (Path path : paths) {
+            try {
+                parser.parse(SourceFile.read(path).getText());
+            } catch (NoSuchFileException e) {
+                diagnostics.add(diagnostic(path, "File does not exist"));
+            } catch (IOException e) {
+                diagnostics.add(diagnostic(path, "Could not read file: " + e.getMessage()));
+            } catch (ParsingException e) {
+                for (ParsingException error : e.getErrors()) {
+                    diagnostics.add(diagnostic(path, error.getMessage()));
+                }
+            }
+        }
+        if (!diagnostics.isEmpty()) {
+            return null;
+        }
+        StringWriter writer = new StringWriter();
+        try {
+            parser.write(writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    private static String marshal(List<Path> paths, JsonArray diagnostics) {
+        StringWriter writer = new StringWriter();
+        SymbolTable symbols = new SymbolTable();
+        for (Path path : paths) {
+            try (Reader reader = SourceFile.read(path).getReader()) {
+                Marshal.marshal(reader, symbols, writer);
+            } catch (NoSuchFileException e) {
+                diagnostics.add(diagnostic(path, "File does not exist"));
+            } catch (IOException e) {
+                diagnostics.add(diagnostic(path, "Could not read file: " + e.getMessage()));
+            } catch (MarshalException e) {
+                diagnostics.add(diagnostic(path, e.getMessage()));
+            }
+        }
+        if (!diagnostics.isEmpty()) {
+            return null;
+        }
+        return writer.toString();
+    }
+}
@@ -1,5 +1,6 @@
 package me.white.justice;
 
+import java.io.IOException;
 import java.util.List;
 
 public class Handler {
@@ -24,4 +25,19 @@ public class Handler {
     public List<Operation> getOperations() {
         return operations;
     }
+
+    public void writeBinary(BinaryWriter writer) throws IOException {
+        writer.writeString(name);
+        writer.writeEnum(type);
+        writer.writeVarInt(operations.size());
+        for (Operation operation : operations) {
+            operation.writeBinary(writer);
+        }
+    }
+
+    public static Handler readBinary(BinaryReader reader) throws IOException {
+        String name = reader.readString();
+        HandlerType type = reader.readEnum(HandlerType.values());
+        return new Handler(name, type, Operation.readOperations(reader));
+    }
 }
@@ -0,0 +1,265 @@
+package me.white.justice;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// writes compact json as utf-8 bytes straight into a buffer, producing the same text as gson's JsonWriter
+// member names are encoded once and then copied as bytes
+public class JsonEmitter implements Closeable, Flushable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    // the longest a single char can get, an escaped line separator
+    private static final int MAX_CHAR_SIZE = 6;
+    private static final long NEGATIVE_ZERO = Double.doubleToRawLongBits(-0.0);
+    private static final Map<String, byte[]> NAMES = new ConcurrentHashMap<>();
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final byte[] digits = new byte[20];
+    private boolean needsComma = false;
+
+    public JsonEmitter(WritableByteChannel channel) {
+        this(channel, BUFFER_SIZE);
+    }
+
+    public JsonEmitter(WritableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(Math.max(bufferSize, 64));
+    }
+
+    public JsonEmitter(OutputStream output) {
+        this(Channels.newChannel(output));
+    }
+
+    private static byte[] encodeName(String name) {
+        JsonEmitter emitter = new JsonEmitter(Channels.newChannel(OutputStream.nullOutputStream()), name.length() * MAX_CHAR_SIZE + 3);
+        try {
+            emitter.writeQuoted(name);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        emitter.buffer.put((byte)':');
+        byte[] bytes = new byte[emitter.buffer.position()];
+        emitter.buffer.flip().get(bytes);
+        return bytes;
+    }
+
+    private void ensure(int size) throws IOException {
+        if (buffer.remaining() < size) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void beforeValue() throws IOException {
+        ensure(1);
+        if (needsComma) {
+            buffer.put((byte)',');
+        }
+    }
+
+    private void put(byte[] bytes) throws IOException {
+        if (bytes.length > buffer.capacity()) {
+            flushBuffer();
+            channel.write(ByteBuffer.wrap(bytes));
+            return;
+        }
+        ensure(bytes.length);
+        buffer.put(bytes);
+    }
+
+    public JsonEmitter beginObject() throws IOException {
+        beforeValue();
+        ensure(1);
+        buffer.put((byte)'{');
+        needsComma = false;
+        return this;
+    }
+
+    public JsonEmitter endObject() throws IOException {
+        ensure(1);
+        buffer.put((byte)'}');
+        needsComma = true;
+        return this;
+    }
+
+    public JsonEmitter beginArray() throws IOException {
+        beforeValue();
+        ensure(1);
+        buffer.put((byte)'[');
+        needsComma = false;
+        return this;
+    }
+
+    public JsonEmitter endArray() throws IOException {
+        ensure(1);
+        buffer.put((byte)']');
+        needsComma = true;
+        return this;
+    }
+
+    public JsonEmitter name(String name) throws IOException {
+        beforeValue();
+        put(NAMES.computeIfAbsent(name, JsonEmitter::encodeName));
+        needsComma = false;
+        return this;
+    }
+
+    // values another emitter already wrote, with the commas between them as they are
+    public JsonEmitter rawValues(byte[] json) throws IOException {
+        if (json.length == 0) {
+            return this;
+        }
+        beforeValue();
+        put(json);
+        needsComma = true;
+        return this;
+    }
+
+    public JsonEmitter value(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        ensure(1);
+        writeQuoted(value);
+        needsComma = true;
+        return this;
+    }
+
+    public JsonEmitter nullValue() throws IOException {
+        beforeValue();
+        put(NULL);
+        needsComma = true;
+        return this;
+    }
+
+    public JsonEmitter value(boolean value) throws IOException {
+        beforeValue();
+        put(value ? TRUE : FALSE);
+        needsComma = true;
+        return this;
+    }
+
+    public JsonEmitter value(long value) throws IOException {
+        beforeValue();
+        ensure(digits.length);
+        writeLong(value);
+        needsComma = true;
+        return this;
+    }
+
+    public JsonEmitter value(double value) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+        }
+        beforeValue();
+        long integer = (long)value;
+        // Double.toString prints integers below 10^7 as plain digits with ".0", everything else takes the slow path
+        if (integer == value && integer > -10_000_000 && integer < 10_000_000 && Double.doubleToRawLongBits(value) != NEGATIVE_ZERO) {
+            ensure(digits.length + 2);
+            writeLong(integer);
+            buffer.put((byte)'.').put((byte)'0');
+        } else {
+            put(Double.toString(value).getBytes(StandardCharsets.US_ASCII));
+        }
+        needsComma = true;
+        return this;
+    }
+
+    private void writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            buffer.put(Long.toString(value).getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+        if (value < 0) {
+            buffer.put((byte)'-');
+            value = -value;
+        }
+        int start = digits.length;
+        do {
+            digits[--start] = (byte)('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        buffer.put(digits, start, digits.length - start);
+    }
+
+    // escapes like gson without html safety, unpaired surrogates become '?' as with a utf-8 writer
+    private void writeQuoted(String string) throws IOException {
+        buffer.put((byte)'"');
+        int length = string.length();
+        for (int i = 0; i < length; ++i) {
+            ensure(MAX_CHAR_SIZE + 1);
+            char ch = string.charAt(i);
+            if (ch < 0x80) {
+                switch (ch) {
+                    case '"' -> buffer.put((byte)'\\').put((byte)'"');
+                    case '\\' -> buffer.put((byte)'\\').put((byte)'\\');
+                    case '\t' -> buffer.put((byte)'\\').put((byte)'t');
+                    case '\b' -> buffer.put((byte)'\\').put((byte)'b');
+                    case '\n' -> buffer.put((byte)'\\').put((byte)'n');
+                    case '\r' -> buffer.put((byte)'\\').put((byte)'r');
+                    case '\f' -> buffer.put((byte)'\\').put((byte)'f');
+                    default -> {
+                        if (ch < 0x20) {
+                            writeUnicodeEscape(ch);
+                        } else {
+                            buffer.put((byte)ch);
+                        }
+                    }
+                }
+            } else if (ch < 0x800) {
+                buffer.put((byte)(0xC0 | ch >> 6)).put((byte)(0x80 | ch & 0x3F));
+            } else if (ch == '\u2028' || ch == '\u2029') {
+                writeUnicodeEscape(ch);
+            } else if (Character.isSurrogate(ch)) {
+                if (Character.isHighSurrogate(ch) && i + 1 < length && Character.isLowSurrogate(string.charAt(i + 1))) {
+                    int point = Character.toCodePoint(ch, string.charAt(i + 1));
+                    i += 1;
+                    buffer.put((byte)(0xF0 | point >> 18)).put((byte)(0x80 | point >> 12 & 0x3F)).put((byte)(0x80 | point >> 6 & 0x3F)).put((byte)(0x80 | point & 0x3F));
+                } else {
+                    buffer.put((byte)'?');
+                }
+            } else {
+                buffer.put((byte)(0xE0 | ch >> 12)).put((byte)(0x80 | ch >> 6 & 0x3F)).put((byte)(0x80 | ch & 0x3F));
+            }
+        }
+        ensure(1);
+        buffer.put((byte)'"');
+    }
+
+    private void writeUnicodeEscape(char ch) {
+        buffer.put((byte)'\\').put((byte)'u').put(HEX[ch >> 12 & 0xF]).put(HEX[ch >> 8 & 0xF]).put(HEX[ch >> 4 & 0xF]).put(HEX[ch & 0xF]);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -2,12 +2,28 @@ package me.white.justice;
 
 import org.apache.commons.cli.*;
 import org.apache.commons.cli.help.HelpFormatter;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 public class JustIce {
     private static final Options COMMAND_LINE_OPTIONS = new Options();
@@ -16,7 +32,7 @@ public class JustIce {
             .longOpt("help")
             .get();
     private static final Option OUT_OPTION = Option.builder("o")
-            .desc("Specify the output file")
+            .desc("Specify the output file, - for the standard output")
             .hasArg()
                 .type(File.class)
                 .argName("file")
@@ -37,6 +53,36 @@ public class JustIce {
             .desc("Do a dry run without producing an output file")
             .longOpt("dry")
             .get();
+    private static final Option JOBS_OPTION = Option.builder("j")
+            .desc("Process files in parallel on the given number of threads")
+            .longOpt("jobs")
+            .hasArg()
+                .type(Number.class)
+                .argName("count")
+            .get();
+    private static final Option DAEMON_OPTION = Option.builder()
+            .desc("Serve parse and marshal requests from the standard input until it is closed")
+            .longOpt("daemon")
+            .get();
+    private static final Option LSP_OPTION = Option.builder()
+            .desc("Serve the language server protocol over the standard input and output")
+            .longOpt("lsp")
+            .get();
+    private static final Option CACHE_OPTION = Option.builder()
+            .desc("Reuse unchanged parsed files from a cache directory (.justice-cache by default)")
+            .longOpt("cache")
+            .hasArg()
+                .optionalArg(true)
+                .argName("dir")
+            .get();
+    private static final Option ATOMIC_OPTION = Option.builder()
+            .desc("Write parsed output to a temporary file that replaces the target once complete, marshalled output is always written this way so that a failed run keeps the previous file")
+            .longOpt("atomic")
+            .get();
+    private static final Option WATCH_OPTION = Option.builder("w")
+            .desc("Keep parsing provided files whenever they change, until interrupted")
+            .longOpt("watch")
+            .get();
     private static final Option SIN_OPTION = Option.builder("s").get();
     private final CommandLine commandLine;
 
@@ -49,6 +95,12 @@ public class JustIce {
         );
         COMMAND_LINE_OPTIONS.addOption(COMPACT_OPTION);
         COMMAND_LINE_OPTIONS.addOption(DRY_OPTION);
+        COMMAND_LINE_OPTIONS.addOption(JOBS_OPTION);
+        COMMAND_LINE_OPTIONS.addOption(DAEMON_OPTION);
+        COMMAND_LINE_OPTIONS.addOption(LSP_OPTION);
+        COMMAND_LINE_OPTIONS.addOption(CACHE_OPTION);
+        COMMAND_LINE_OPTIONS.addOption(ATOMIC_OPTION);
+        COMMAND_LINE_OPTIONS.addOption(WATCH_OPTION);
         COMMAND_LINE_OPTIONS.addOption(SIN_OPTION);
     }
 
@@ -94,6 +146,14 @@ public class JustIce {
             sin();
             return;
         }
+        if (commandLine.hasOption(DAEMON_OPTION)) {
+            daemon();
+            return;
+        }
+        if (commandLine.hasOption(LSP_OPTION)) {
+            languageServer();
+            return;
+        }
         String[] files = commandLine.getArgs();
         if (files.length == 0) {
             System.out.println("No files provided for processing. -h for help");
@@ -111,11 +171,39 @@ public class JustIce {
         File out = null;
         if (commandLine.hasOption(OUT_OPTION)) {
             out = commandLine.getParsedOptionValue(OUT_OPTION);
+            if (OutputFile.isStdout(out)) {
+                // reports go to the error stream so that the output can be piped
+                System.setOut(System.err);
+            }
+        }
+        int jobs = 1;
+        if (commandLine.hasOption(JOBS_OPTION)) {
+            jobs = commandLine.<Number>getParsedOptionValue(JOBS_OPTION).intValue();
+            if (jobs < 1) {
+                System.out.println("Number of jobs must be positive");
+                return;
+            }
         }
-        if (isForParsing(paths)) {
-            parse(paths, out);
+        ModuleCache cache = null;
+        if (commandLine.hasOption(CACHE_OPTION)) {
+            String directory = commandLine.getOptionValue(CACHE_OPTION, ".justice-cache");
+            try {
+                cache = new ModuleCache(Path.of(directory));
+            } catch (InvalidPathException e) {
+                System.err.print("Invalid cache path '" + directory + "': " + e.getMessage());
+                return;
+            }
+        }
+        if (commandLine.hasOption(WATCH_OPTION)) {
+            if (!isForParsing(paths)) {
+                System.out.println("Only parsing can be watched");
+                return;
+            }
+            watch(paths, out, cache);
+        } else if (isForParsing(paths)) {
+            parse(paths, out, jobs, cache);
         } else {
-            marshal(paths, out);
+            marshal(paths, out, jobs);
         }
     }
 
@@ -127,6 +215,29 @@ public class JustIce {
         }
     }
 
+    private void daemon() {
+        Daemon daemon = new Daemon(
+                new InputStreamReader(System.in, StandardCharsets.UTF_8),
+                new OutputStreamWriter(System.out, StandardCharsets.UTF_8)
+        );
+        try {
+            daemon.run();
+        } catch (IOException e) {
+            System.err.print("Daemon stopped: " + e.getMessage());
+        }
+    }
+
+    private void languageServer() {
+        OutputStream output = new FileOutputStream(FileDescriptor.out);
+        // anything printed on the way must not end up between protocol messages
+        System.setOut(System.err);
+        try {
+            new LanguageServer(System.in, output).run();
+        } catch (IOException e) {
+            System.err.print("Language server stopped: " + e.getMessage());
+        }
+    }
+
     private void sin() {
         String[] sins = new String[]{
                 "WRATH",
@@ -195,66 +306,242 @@ public class JustIce {
         }
     }
 
-    private void parse(Path[] paths, File out) {
+    private void watch(Path[] paths, File out, ModuleCache cache) {
+        if (commandLine.hasOption(DRY_OPTION)) {
+            out = null;
+        } else if (out == null) {
+            out = new File("result.json");
+        }
+        Watcher watcher = new Watcher(paths, out, commandLine.hasOption(COMPACT_OPTION), commandLine.hasOption(ATOMIC_OPTION), cache);
+        try {
+            watcher.run();
+        } catch (IOException e) {
+            System.err.print("Could not watch files: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void parse(Path[] paths, File out, int jobs, ModuleCache cache) {
         if (out == null) {
             out = new File("result.json");
         }
         Parser parser = new Parser();
         parser.setCompact(commandLine.hasOption(COMPACT_OPTION));
-        for (Path path : paths) {
-            String source = readFile(path);
-            if (source == null) {
-                return;
-            }
-            try {
-                parser.parse(source);
-            } catch (ParsingException e) {
-                System.out.println(e.getMessage());
-                return;
-            }
+        boolean isSuccess = jobs > 1 ? parse(paths, parser, jobs, cache) : parse(paths, parser, cache);
+        if (!isSuccess) {
+            return;
         }
         if (commandLine.hasOption(DRY_OPTION)) {
             System.out.println("Dry run success!");
             return;
         }
-        try (FileWriter file = new FileWriter(out)) {
-            parser.write(file);
+        try (OutputFile output = OutputFile.open(out, commandLine.hasOption(ATOMIC_OPTION))) {
+            if (jobs > 1) {
+                write(parser, output, jobs);
+            } else {
+                parser.write(output.getChannel());
+            }
+            output.commit();
         } catch (IOException e) {
             System.err.print("Could not write file '" + out + "': " + e.getMessage());
         }
     }
 
-    private void marshal(Path[] paths, File out) {
-        if (out == null) {
-            out = new File("result.ice");
+    private static void write(Parser parser, OutputFile output, int jobs) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(jobs);
+        try {
+            parser.write(output.getChannel(), pool);
+        } finally {
+            pool.shutdown();
         }
-        Marshal marshal = new Marshal();
-        for (Path path : paths) {
-            String source = readFile(path);
-            if (source == null) {
-                return;
+    }
+
+    static List<Handler> parseFile(Path path, @Nullable ModuleCache cache, SymbolTable symbols) throws ParsingException, IOException {
+        return parseFile(path, SourceFile.map(path), cache, symbols, null);
+    }
+
+    static List<Handler> parseFile(Path path, @Nullable ModuleCache cache, SymbolTable symbols, @Nullable ForkJoinPool pool) throws ParsingException, IOException {
+        return parseFile(path, SourceFile.map(path), cache, symbols, pool);
+    }
+
+    // handlers of a file are parsed in parallel when given a pool
+    static List<Handler> parseFile(Path path, SourceFile source, @Nullable ModuleCache cache, SymbolTable symbols, @Nullable ForkJoinPool pool) throws ParsingException, IOException {
+        if (cache == null) {
+            return parseText(source.getText(), symbols, pool);
+        }
+        String key = ModuleCache.key(source.getBytes());
+        List<Handler> handlers = cache.load(key);
+        if (handlers == null) {
+            handlers = parseText(source.getText(), symbols, pool);
+            try {
+                cache.store(key, handlers);
+            } catch (IOException e) {
+                System.err.println("Could not cache file '" + path + "': " + e.getMessage());
             }
+        }
+        return handlers;
+    }
+
+    private static List<Handler> parseText(CharSequence text, SymbolTable symbols, @Nullable ForkJoinPool pool) throws ParsingException {
+        if (pool == null) {
+            return Parser.parseHandlers(text, symbols);
+        }
+        return Parser.parseHandlers(text, symbols, pool);
+    }
+
+    private static boolean parse(Path[] paths, Parser parser, @Nullable ModuleCache cache) {
+        boolean isSuccess = true;
+        for (Path path : paths) {
             try {
-                marshal.marshal(source);
-            } catch (MarshalException e) {
-                System.out.println(e.getMessage());
-                return;
+                List<Handler> handlers = parseFile(path, cache, parser.getSymbols());
+                if (isSuccess) {
+                    parser.addHandlers(handlers);
+                }
+            } catch (NoSuchFileException e) {
+                System.err.println("File '" + path + "' does not exist");
+                return false;
+            } catch (IOException e) {
+                System.err.println("Could not read file '" + path + "': " + e.getMessage());
+                return false;
+            } catch (ParsingException e) {
+                // the other files are still parsed for their errors
+                printErrors(paths, path, e);
+                isSuccess = false;
             }
         }
+        return isSuccess;
+    }
+
+    static void printErrors(Path[] paths, Path path, ParsingException e) {
+        if (paths.length > 1) {
+            System.out.println("In file '" + path + "':");
+        }
+        System.out.println(e.getMessage());
+    }
+
+    // parses every file on its own worker and reports the errors of all of them at once
+    // large files are split further, their parts are parsed on a separate pool that file workers wait on
+    private static boolean parse(Path[] paths, Parser parser, int jobs, @Nullable ModuleCache cache) {
+        ExecutorService pool = Executors.newFixedThreadPool(jobs);
+        ForkJoinPool handlerPool = new ForkJoinPool(jobs);
+        try {
+            List<Future<List<Handler>>> tasks = new ArrayList<>();
+            for (Path path : paths) {
+                tasks.add(pool.submit(() -> parseFile(path, cache, parser.getSymbols(), handlerPool)));
+            }
+            boolean isSuccess = true;
+            for (int i = 0; i < paths.length; ++i) {
+                try {
+                    List<Handler> handlers = tasks.get(i).get();
+                    if (isSuccess) {
+                        parser.addHandlers(handlers);
+                    }
+                } catch (ExecutionException e) {
+                    isSuccess = false;
+                    switch (e.getCause()) {
+                        case NoSuchFileException ignored -> System.err.println("File '" + paths[i] + "' does not exist");
+                        case IOException cause -> System.err.println("Could not read file '" + paths[i] + "': " + cause.getMessage());
+                        case ParsingException cause -> printErrors(paths, paths[i], cause);
+                        default -> throw new RuntimeException(e.getCause());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return isSuccess;
+        } finally {
+            pool.shutdown();
+            handlerPool.shutdown();
+        }
+    }
+
+    private void marshal(Path[] paths, File out, int jobs) {
+        if (out == null) {
+            out = new File("result.ice");
+        }
+        if (jobs > 1) {
+            marshal(paths, out, new ParallelMarshal(jobs));
+            return;
+        }
         if (commandLine.hasOption(DRY_OPTION)) {
-            System.out.println("Dry run success!");
+            if (marshal(paths, handler -> { })) {
+                System.out.println("Dry run success!");
+            }
             return;
         }
-        try (FileWriter writer = new FileWriter(out)) {
-            marshal.write(writer);
-        } catch (IOException e) {
+        // handlers are written as they are read, so the output always goes to a temporary file that replaces the target once complete
+        // a failed marshal then leaves the previous output in place
+        try (OutputFile output = OutputFile.open(out, true)) {
+            Writer writer = output.getWriter();
+            boolean isSuccess = marshal(paths, handler -> {
+                try {
+                    Marshal.writeHandler(writer, handler);
+                    writer.write("\n");
+                } catch (IOException e) {
+                    // keep write failures apart from read failures of the input
+                    throw new UncheckedIOException(e);
+                }
+            });
+            if (isSuccess) {
+                output.commit();
+            }
+        } catch (IOException | UncheckedIOException e) {
             System.err.print("Could not write file '" + out + "': " + e.getMessage());
         }
     }
 
-    public static String readFile(Path path) {
+    private void marshal(Path[] paths, File out, ParallelMarshal marshal) {
+        try (marshal) {
+            for (Path path : paths) {
+                marshal.marshal(path);
+            }
+            if (commandLine.hasOption(DRY_OPTION)) {
+                try {
+                    marshal.write(Writer.nullWriter());
+                    System.out.println("Dry run success!");
+                } catch (MarshalException | IOException e) {
+                    System.out.println(e.getMessage());
+                }
+                return;
+            }
+            // like the sequential path, a failed marshal leaves the previous output in place
+            try (OutputFile output = OutputFile.open(out, true)) {
+                try {
+                    marshal.write(output.getWriter());
+                    output.commit();
+                } catch (MarshalException e) {
+                    System.out.println(e.getMessage());
+                }
+            } catch (IOException e) {
+                System.err.print("Could not write file '" + out + "': " + e.getMessage());
+            }
+        }
+    }
+
+    private static boolean marshal(Path[] paths, Marshal.HandlerConsumer consumer) {
+        SymbolTable symbols = new SymbolTable();
+        for (Path path : paths) {
+            try (Reader reader = SourceFile.map(path).getReader()) {
+                Marshal.marshal(reader, symbols, consumer);
+            } catch (NoSuchFileException e) {
+                System.err.println("File '" + path + "' does not exist");
+                return false;
+            } catch (IOException e) {
+                System.err.println("Could not read file '" + path + "': " + e.getMessage());
+                return false;
+            } catch (MarshalException e) {
+                System.out.println(e.getMessage());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static CharSequence readFile(Path path) {
         try {
-            return Files.readString(path);
+            return SourceFile.map(path).getText();
         } catch (NoSuchFileException e) {
             System.err.println("File '" + path + "' does not exist");
         } catch (IOException e) {
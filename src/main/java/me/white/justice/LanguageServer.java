@@ -0,0 +1,439 @@
+package me.white.justice;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import me.white.justice.lexer.LineIndex;
+import me.white.justice.lexer.TokenType;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+// serves the language server protocol over content-length framed json-rpc messages
+// every open document is kept parsed, an edit only reparses the handlers it touches
+// positions count utf-16 code units, which are java chars
+public class LanguageServer {
+    private static final String[] TOKEN_TYPES = new String[]{ "keyword", "function", "parameter", "variable", "string", "number", "macro", "enumMember", "operator" };
+    // indices into the token types
+    private static final int KEYWORD = 0;
+    private static final int FUNCTION = 1;
+    private static final int PARAMETER = 2;
+    private static final int VARIABLE = 3;
+    private static final int STRING = 4;
+    private static final int NUMBER = 5;
+    private static final int MACRO = 6;
+    private static final int ENUM_MEMBER = 7;
+    private static final int OPERATOR = 8;
+    private static final int PARSE_ERROR = -32700;
+    private static final int INVALID_PARAMS = -32602;
+    private static final int METHOD_NOT_FOUND = -32601;
+    private static final int INVALID_REQUEST = -32600;
+    private final InputStream input;
+    private final OutputStream output;
+    private final Map<String, Document> documents = new HashMap<>();
+    private boolean isShutdown = false;
+
+    public LanguageServer(InputStream input, OutputStream output) {
+        this.input = new BufferedInputStream(input);
+        this.output = new BufferedOutputStream(output);
+    }
+
+    public void run() throws IOException {
+        Daemon.warmUp();
+        byte[] content;
+        while ((content = readMessage()) != null) {
+            JsonObject message;
+            try {
+                message = JsonParser.parseString(new String(content, StandardCharsets.UTF_8)).getAsJsonObject();
+            } catch (JsonParseException | IllegalStateException e) {
+                sendError(JsonNull.INSTANCE, PARSE_ERROR, "Malformed message: " + e.getMessage());
+                continue;
+            }
+            JsonElement id = message.get("id");
+            if (!message.has("method")) {
+                // responses to requests of the server, which never sends any
+                continue;
+            }
+            String method;
+            try {
+                method = getString(message, "method");
+            } catch (JsonParseException e) {
+                if (id != null) {
+                    sendError(id, INVALID_REQUEST, "Malformed request: " + e.getMessage());
+                }
+                continue;
+            }
+            if (method.equals("exit")) {
+                return;
+            }
+            try {
+                JsonElement params = message.get("params");
+                handle(id, method, params != null && params.isJsonObject() ? params.getAsJsonObject() : new JsonObject());
+            } catch (JsonParseException | IllegalStateException e) {
+                if (id != null) {
+                    sendError(id, INVALID_PARAMS, "Malformed parameters of '" + method + "': " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void handle(@Nullable JsonElement id, String method, JsonObject params) throws IOException {
+        if (isShutdown && id != null) {
+            sendError(id, INVALID_REQUEST, "Server is shut down");
+            return;
+        }
+        switch (method) {
+            case "initialize" -> sendResult(id, capabilities());
+            case "shutdown" -> {
+                isShutdown = true;
+                documents.clear();
+                sendResult(id, JsonNull.INSTANCE);
+            }
+            case "textDocument/didOpen" -> {
+                JsonObject item = getObject(params, "textDocument");
+                String uri = getString(item, "uri");
+                Document document = new Document(ParsedSource.parse(getString(item, "text"), new SymbolTable()));
+                documents.put(uri, document);
+                publishDiagnostics(uri, document);
+            }
+            case "textDocument/didChange" -> {
+                String uri = getString(getObject(params, "textDocument"), "uri");
+                Document document = documents.get(uri);
+                if (document == null) {
+                    return;
+                }
+                for (JsonElement element : getArray(params, "contentChanges")) {
+                    if (!element.isJsonObject()) {
+                        throw new JsonParseException("Expected 'contentChanges' to hold objects");
+                    }
+                    document = document.change(element.getAsJsonObject());
+                }
+                documents.put(uri, document);
+                publishDiagnostics(uri, document);
+            }
+            case "textDocument/didClose" -> {
+                String uri = getString(getObject(params, "textDocument"), "uri");
+                if (documents.remove(uri) != null) {
+                    sendNotification("textDocument/publishDiagnostics", diagnostics(uri, new JsonArray()));
+                }
+            }
+            case "textDocument/semanticTokens/full" -> {
+                String uri = getString(getObject(params, "textDocument"), "uri");
+                Document document = documents.get(uri);
+                if (document == null) {
+                    sendError(id, INVALID_PARAMS, "Document '" + uri + "' is not open");
+                    return;
+                }
+                sendTokens(id, document);
+            }
+            default -> {
+                // notifications that are not known are meant to be ignored
+                if (id != null) {
+                    sendError(id, METHOD_NOT_FOUND, "Unknown method '" + method + "'");
+                }
+            }
+        }
+    }
+
+    // members of requests are checked up front, so a malformed one gets an error response instead of ending the server
+    private static JsonObject getObject(JsonObject object, String name) {
+        JsonElement element = object.get(name);
+        if (element == null || !element.isJsonObject()) {
+            throw new JsonParseException("Expected '" + name + "' to be an object");
+        }
+        return element.getAsJsonObject();
+    }
+
+    private static JsonArray getArray(JsonObject object, String name) {
+        JsonElement element = object.get(name);
+        if (element == null || !element.isJsonArray()) {
+            throw new JsonParseException("Expected '" + name + "' to be an array");
+        }
+        return element.getAsJsonArray();
+    }
+
+    private static String getString(JsonObject object, String name) {
+        JsonElement element = object.get(name);
+        if (element == null || !element.isJsonPrimitive() || !element.getAsJsonPrimitive().isString()) {
+            throw new JsonParseException("Expected '" + name + "' to be a string");
+        }
+        return element.getAsString();
+    }
+
+    private static int getInt(JsonObject object, String name) {
+        JsonElement element = object.get(name);
+        if (element == null || !element.isJsonPrimitive() || !element.getAsJsonPrimitive().isNumber()) {
+            throw new JsonParseException("Expected '" + name + "' to be a number");
+        }
+        return element.getAsInt();
+    }
+
+    private static JsonObject capabilities() {
+        JsonObject sync = new JsonObject();
+        sync.addProperty("openClose", true);
+        // incremental
+        sync.addProperty("change", 2);
+        JsonObject legend = new JsonObject();
+        JsonArray types = new JsonArray();
+        for (String type : TOKEN_TYPES) {
+            types.add(type);
+        }
+        legend.add("tokenTypes", types);
+        legend.add("tokenModifiers", new JsonArray());
+        JsonObject semanticTokens = new JsonObject();
+        semanticTokens.add("legend", legend);
+        semanticTokens.addProperty("full", true);
+        JsonObject capabilities = new JsonObject();
+        capabilities.add("textDocumentSync", sync);
+        capabilities.add("semanticTokensProvider", semanticTokens);
+        JsonObject info = new JsonObject();
+        info.addProperty("name", "justice");
+        JsonObject result = new JsonObject();
+        result.add("capabilities", capabilities);
+        result.add("serverInfo", info);
+        return result;
+    }
+
+    private void publishDiagnostics(String uri, Document document) throws IOException {
+        JsonArray diagnostics = new JsonArray();
+        for (ParsingException error : document.source.getErrors()) {
+            int start = Math.max(0, error.getPos());
+            JsonObject diagnostic = new JsonObject();
+            diagnostic.add("range", document.range(start, start + Math.max(1, error.getLength())));
+            // error
+            diagnostic.addProperty("severity", 1);
+            diagnostic.addProperty("source", "justice");
+            diagnostic.addProperty("message", error.getReason());
+            diagnostics.add(diagnostic);
+        }
+        sendNotification("textDocument/publishDiagnostics", diagnostics(uri, diagnostics));
+    }
+
+    private static JsonObject diagnostics(String uri, JsonArray diagnostics) {
+        JsonObject params = new JsonObject();
+        params.addProperty("uri", uri);
+        params.add("diagnostics", diagnostics);
+        return params;
+    }
+
+    // large documents have hundreds of thousands of numbers, which are written out directly instead of through gson
+    private void sendTokens(JsonElement id, Document document) throws IOException {
+        StringBuilder builder = new StringBuilder(4096);
+        builder.append("{\"jsonrpc\":\"2.0\",\"id\":").append(id).append(",\"result\":{\"data\":[");
+        TokenEncoder encoder = new TokenEncoder(document, builder);
+        document.source.forEachToken(encoder);
+        encoder.flush();
+        builder.append("]}}");
+        send(builder.toString());
+    }
+
+    private void sendResult(JsonElement id, JsonElement result) throws IOException {
+        JsonObject response = new JsonObject();
+        response.addProperty("jsonrpc", "2.0");
+        response.add("id", id);
+        response.add("result", result);
+        send(response.toString());
+    }
+
+    private void sendError(JsonElement id, int code, String message) throws IOException {
+        JsonObject error = new JsonObject();
+        error.addProperty("code", code);
+        error.addProperty("message", message);
+        JsonObject response = new JsonObject();
+        response.addProperty("jsonrpc", "2.0");
+        response.add("id", id);
+        response.add("error", error);
+        send(response.toString());
+    }
+
+    private void sendNotification(String method, JsonObject params) throws IOException {
+        JsonObject notification = new JsonObject();
+        notification.addProperty("jsonrpc", "2.0");
+        notification.addProperty("method", method);
+        notification.add("params", params);
+        send(notification.toString());
+    }
+
+    private void send(String message) throws IOException {
+        byte[] content = message.getBytes(StandardCharsets.UTF_8);
+        output.write(("Content-Length: " + content.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        output.write(content);
+        output.flush();
+    }
+
+    // null once the input has ended
+    @Nullable
+    private byte[] readMessage() throws IOException {
+        int length = -1;
+        while (true) {
+            String header = readHeader();
+            if (header == null) {
+                return null;
+            }
+            if (header.isEmpty()) {
+                break;
+            }
+            int colon = header.indexOf(':');
+            if (colon != -1 && header.substring(0, colon).trim().equalsIgnoreCase("Content-Length")) {
+                try {
+                    length = Integer.parseInt(header.substring(colon + 1).trim());
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid content length '" + header.substring(colon + 1).trim() + "'");
+                }
+            }
+        }
+        if (length < 0) {
+            throw new IOException("Message without content length");
+        }
+        byte[] content = input.readNBytes(length);
+        if (content.length < length) {
+            return null;
+        }
+        return content;
+    }
+
+    @Nullable
+    private String readHeader() throws IOException {
+        StringBuilder header = new StringBuilder();
+        int ch;
+        while ((ch = input.read()) != '\n') {
+            if (ch == -1) {
+                return null;
+            }
+            if (ch != '\r') {
+                header.append((char)ch);
+            }
+        }
+        return header.toString();
+    }
+
+    private static class Document {
+        private final ParsedSource source;
+        private final LineIndex lines;
+
+        private Document(ParsedSource source) {
+            this.source = source;
+            this.lines = source.getLines();
+        }
+
+        // a change without a range replaces the whole document
+        private Document change(JsonObject change) {
+            String text = getString(change, "text");
+            if (!change.has("range")) {
+                return new Document(ParsedSource.parse(text, new SymbolTable()));
+            }
+            JsonObject range = getObject(change, "range");
+            int start = offset(getObject(range, "start"));
+            int end = Math.max(start, offset(getObject(range, "end")));
+            return new Document(source.edit(start, end - start, text));
+        }
+
+        // positions past the end of a line or of the document are moved back to it
+        private int offset(JsonObject position) {
+            int line = getInt(position, "line");
+            if (line >= lines.getCount()) {
+                return source.getSource().length();
+            }
+            line = Math.max(0, line);
+            return Math.min(lines.getStart(line) + Math.max(0, getInt(position, "character")), lines.getEnd(line));
+        }
+
+        private JsonObject position(int offset) {
+            offset = Math.min(offset, source.getSource().length());
+            int line = lines.lineOf(offset);
+            JsonObject position = new JsonObject();
+            position.addProperty("line", line);
+            position.addProperty("character", offset - lines.getStart(line));
+            return position;
+        }
+
+        private JsonObject range(int start, int end) {
+            JsonObject range = new JsonObject();
+            range.add("start", position(start));
+            range.add("end", position(end));
+            return range;
+        }
+    }
+
+    // writes tokens relative to the previous one, a literal is only classified once the token after it is known
+    private static class TokenEncoder implements ParsedSource.TokenConsumer {
+        private final Document document;
+        private final StringBuilder builder;
+        private int line = 0;
+        private int lastLine = 0;
+        private int lastColumn = 0;
+        private boolean isFirst = true;
+        private int literalPos = -1;
+        private int literalLength = 0;
+
+        private TokenEncoder(Document document, StringBuilder builder) {
+            this.document = document;
+            this.builder = builder;
+        }
+
+        @Override
+        public void accept(TokenType type, int pos, int length) {
+            if (literalPos != -1) {
+                int literal = switch (type) {
+                    case ARGS_OPEN, BLOCK_OPEN -> FUNCTION;
+                    case EQUALS -> PARAMETER;
+                    default -> KEYWORD;
+                };
+                append(literalPos, literalLength, literal);
+                literalPos = -1;
+            }
+            if (type == TokenType.LITERAL) {
+                literalPos = pos;
+                literalLength = length;
+                return;
+            }
+            int index = switch (type) {
+                case IDENTIFIER -> VARIABLE;
+                case STRING -> STRING;
+                case NUMBER, COLOR -> NUMBER;
+                case PLACEHOLDER -> MACRO;
+                case ENUM -> ENUM_MEMBER;
+                case EQUALS -> OPERATOR;
+                default -> -1;
+            };
+            if (index != -1) {
+                append(pos, length, index);
+            }
+        }
+
+        private void flush() {
+            if (literalPos != -1) {
+                append(literalPos, literalLength, KEYWORD);
+                literalPos = -1;
+            }
+        }
+
+        // tokens only come forward, so the line is found by walking the index along with them
+        private void append(int pos, int length, int type) {
+            LineIndex lines = document.lines;
+            while (line + 1 < lines.getCount() && lines.getStart(line + 1) <= pos) {
+                line += 1;
+            }
+            int column = pos - lines.getStart(line);
+            // tokens spanning lines are cut at the end of their first one
+            length = Math.min(length, lines.getEnd(line) - pos);
+            if (!isFirst) {
+                builder.append(',');
+            }
+            isFirst = false;
+            int deltaLine = line - lastLine;
+            builder.append(deltaLine).append(',')
+                    .append(deltaLine == 0 ? column - lastColumn : column).append(',')
+                    .append(length).append(',')
+                    .append(type).append(",0");
+            lastLine = line;
+            lastColumn = column;
+        }
+    }
+}
@@ -1,16 +1,37 @@
 package me.white.justice;
 
 import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
 import me.white.justice.value.*;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.io.Writer;
 import java.util.*;
 
 public class Marshal {
     private final List<Handler> handlers = new ArrayList<>();
+    private final SymbolTable symbols;
 
-    public Marshal() { }
+    public Marshal() {
+        this(new SymbolTable());
+    }
+
+    public Marshal(SymbolTable symbols) {
+        this.symbols = symbols;
+    }
+
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    public interface HandlerConsumer {
+        void accept(Handler handler) throws IOException;
+    }
 
     public static JsonElement jsonGet(JsonObject object, String name) throws MarshalException {
         JsonElement element = object.get(name);
@@ -22,42 +43,226 @@ public class Marshal {
 
     public void marshal(String json) throws MarshalException {
         try {
-            JsonObject object = JsonParser.parseString(json).getAsJsonObject();
-            JsonArray handlersArray = jsonGet(object, "handlers").getAsJsonArray();
-            for (JsonElement element : handlersArray) {
-                handlers.add(marshalHandler(element.getAsJsonObject()));
+            marshal(new StringReader(json));
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    public void marshal(Reader reader) throws MarshalException, IOException {
+        marshal(reader, symbols, handlers::add);
+    }
+
+    public static void marshal(Reader reader, SymbolTable symbols, Writer writer) throws MarshalException, IOException {
+        marshal(reader, symbols, handler -> {
+            writeHandler(writer, handler);
+            writer.write("\n");
+        });
+    }
+
+    // decodes the module one handler at a time, so only the current handler is kept in memory
+    public static void marshal(Reader reader, SymbolTable symbols, HandlerConsumer consumer) throws MarshalException, IOException {
+        readModule(reader, json -> consumer.accept(marshalHandler(json, symbols)));
+    }
+
+    interface ModuleVisitor {
+        void visitHandler(JsonReader json) throws MarshalException, IOException;
+    }
+
+    static void readModule(Reader reader, ModuleVisitor visitor) throws MarshalException, IOException {
+        JsonReader json = new JsonReader(reader);
+        json.setStrictness(Strictness.LENIENT);
+        try {
+            boolean hasHandlers = false;
+            json.beginObject();
+            while (json.hasNext()) {
+                if (!json.nextName().equals("handlers")) {
+                    json.skipValue();
+                    continue;
+                }
+                hasHandlers = true;
+                json.beginArray();
+                while (json.hasNext()) {
+                    visitor.visitHandler(json);
+                }
+                json.endArray();
             }
-        } catch (JsonParseException | IllegalStateException | MarshalException e) {
+            json.endObject();
+            if (!hasHandlers) {
+                throw new MarshalException("No 'handlers' member");
+            }
+        } catch (MalformedJsonException | EOFException | JsonParseException | IllegalStateException | UnsupportedOperationException | NumberFormatException | MarshalException e) {
             throw new MarshalException("Malformed module: " + e.getMessage());
         }
     }
 
-    public static Handler marshalHandler(JsonObject handler) throws MarshalException {
+    public static Handler marshalHandler(JsonReader json, SymbolTable symbols) throws MarshalException, IOException {
+        String typeString = null;
+        Map<String, String> names = new HashMap<>();
+        List<Operation> operations = null;
+        json.beginObject();
+        while (json.hasNext()) {
+            String member = json.nextName();
+            switch (member) {
+                case "type" -> typeString = json.nextString();
+                case "operations" -> {
+                    operations = new ArrayList<>();
+                    json.beginArray();
+                    while (json.hasNext()) {
+                        operations.add(marshalOperation(json, symbols));
+                    }
+                    json.endArray();
+                }
+                default -> {
+                    if (json.peek() == JsonToken.STRING) {
+                        names.put(member, json.nextString());
+                    } else {
+                        json.skipValue();
+                    }
+                }
+            }
+        }
+        json.endObject();
+        if (typeString == null) {
+            throw new MarshalException("No 'type' member");
+        }
+        HandlerType type = HandlerType.byName(typeString);
+        if (type == null) {
+            throw new MarshalException("Invalid handler type '" + typeString + "'");
+        }
+        String name = names.get(type.getNameField());
+        if (name == null) {
+            throw new MarshalException("No '" + type.getNameField() + "' member");
+        }
+        if (operations == null) {
+            throw new MarshalException("No 'operations' member");
+        }
+        return new Handler(symbols.intern(name), type, operations);
+    }
+
+    public static Operation marshalOperation(JsonReader json, SymbolTable symbols) throws MarshalException, IOException {
+        String name = null;
+        String delegate = null;
+        boolean isInverted = false;
+        boolean isDelegateInverted = false;
+        String selector = null;
+        Map<String, Value> arguments = null;
+        List<Operation> operations = new ArrayList<>();
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "action" -> name = symbols.intern(json.nextString());
+                case "is_inverted" -> isInverted = json.nextBoolean();
+                case "conditional" -> {
+                    json.beginObject();
+                    while (json.hasNext()) {
+                        switch (json.nextName()) {
+                            case "action" -> delegate = symbols.intern(json.nextString());
+                            case "is_inverted" -> isDelegateInverted = json.nextBoolean();
+                            default -> json.skipValue();
+                        }
+                    }
+                    json.endObject();
+                    if (delegate == null) {
+                        throw new MarshalException("No 'action' member");
+                    }
+                }
+                case "selection" -> {
+                    json.beginObject();
+                    while (json.hasNext()) {
+                        if (json.nextName().equals("type")) {
+                            selector = symbols.intern(json.nextString());
+                        } else {
+                            json.skipValue();
+                        }
+                    }
+                    json.endObject();
+                    if (selector == null) {
+                        throw new MarshalException("No 'type' member");
+                    }
+                }
+                case "values" -> {
+                    arguments = new ArgumentMap();
+                    json.beginArray();
+                    while (json.hasNext()) {
+                        marshalArgument(json, symbols, arguments);
+                    }
+                    json.endArray();
+                }
+                case "operations" -> {
+                    json.beginArray();
+                    while (json.hasNext()) {
+                        operations.add(marshalOperation(json, symbols));
+                    }
+                    json.endArray();
+                }
+                default -> json.skipValue();
+            }
+        }
+        json.endObject();
+        if (name == null) {
+            throw new MarshalException("No 'action' member");
+        }
+        if (arguments == null) {
+            throw new MarshalException("No 'values' member");
+        }
+        if (delegate != null) {
+            isInverted = isDelegateInverted;
+        }
+        return new Operation(name, isInverted, delegate, selector, arguments, operations);
+    }
+
+    private static void marshalArgument(JsonReader json, SymbolTable symbols, Map<String, Value> arguments) throws MarshalException, IOException {
+        String name = null;
+        JsonObject valueObject = null;
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "name" -> name = symbols.intern(json.nextString());
+                // values are small, so they are still decoded as a tree
+                case "value" -> valueObject = JsonParser.parseReader(json).getAsJsonObject();
+                default -> json.skipValue();
+            }
+        }
+        json.endObject();
+        if (name == null) {
+            throw new MarshalException("No 'name' member");
+        }
+        if (valueObject == null) {
+            throw new MarshalException("No 'value' member");
+        }
+        Value value = marshalValue(valueObject, true, symbols);
+        if (value != null) {
+            arguments.put(name, value);
+        }
+    }
+
+    public static Handler marshalHandler(JsonObject handler, SymbolTable symbols) throws MarshalException {
         String typeString = jsonGet(handler, "type").getAsString();
         HandlerType type = HandlerType.byName(typeString);
         if (type == null) {
             throw new MarshalException("Invalid handler type '" + typeString + "'");
         }
-        String name = jsonGet(handler, type.getNameField()).getAsString();
+        String name = symbols.intern(jsonGet(handler, type.getNameField()).getAsString());
         List<Operation> operations = new ArrayList<>();
         JsonArray operationsArray = jsonGet(handler, "operations").getAsJsonArray();
         for (JsonElement element : operationsArray) {
             JsonObject operation = element.getAsJsonObject();
-            operations.add(marshalOperation(operation));
+            operations.add(marshalOperation(operation, symbols));
         }
         return new Handler(name, type, operations);
     }
 
-    public static Operation marshalOperation(JsonObject operation) throws MarshalException {
-        String name = jsonGet(operation, "action").getAsString();
+    public static Operation marshalOperation(JsonObject operation, SymbolTable symbols) throws MarshalException {
+        String name = symbols.intern(jsonGet(operation, "action").getAsString());
         String delegate = null;
         boolean isInverted = false;
         String selector = null;
-        Map<String, Value> arguments = new HashMap<>();
+        Map<String, Value> arguments = new ArgumentMap();
         List<Operation> operations = new ArrayList<>();
         if (operation.has("conditional")) {
             JsonObject conditional = jsonGet(operation, "conditional").getAsJsonObject();
-            delegate = jsonGet(conditional, "action").getAsString();
+            delegate = symbols.intern(jsonGet(conditional, "action").getAsString());
             if (conditional.has("is_inverted")) {
                 isInverted = jsonGet(conditional, "is_inverted").getAsBoolean();
             }
@@ -66,14 +271,14 @@ public class Marshal {
         }
         if (operation.has("selection")) {
             JsonObject selection = jsonGet(operation, "selection").getAsJsonObject();
-            selector = jsonGet(selection, "type").getAsString();
+            selector = symbols.intern(jsonGet(selection, "type").getAsString());
         }
         JsonArray values = jsonGet(operation, "values").getAsJsonArray();
         for (JsonElement element : values) {
             JsonObject argument = element.getAsJsonObject();
-            String valueName = jsonGet(argument, "name").getAsString();
+            String valueName = symbols.intern(jsonGet(argument, "name").getAsString());
             JsonObject valueObject = jsonGet(argument, "value").getAsJsonObject();
-            Value value = marshalValue(valueObject, true);
+            Value value = marshalValue(valueObject, true, symbols);
             if (value != null) {
                 arguments.put(valueName, value);
             }
@@ -82,13 +287,13 @@ public class Marshal {
             JsonArray operationsArray = jsonGet(operation, "operations").getAsJsonArray();
             for (JsonElement element : operationsArray) {
                 JsonObject operationObject = element.getAsJsonObject();
-                operations.add(marshalOperation(operationObject));
+                operations.add(marshalOperation(operationObject, symbols));
             }
         }
         return new Operation(name, isInverted, delegate, selector, arguments, operations);
     }
 
-    public static Value marshalValue(JsonObject value, boolean allowArrays) throws MarshalException {
+    public static Value marshalValue(JsonObject value, boolean allowArrays, SymbolTable symbols) throws MarshalException {
         if (value.isEmpty()) {
             return null;
         }
@@ -100,7 +305,7 @@ public class Marshal {
         if (type == ValueType.ARRAY && !allowArrays) {
             throw new MarshalException("Recursing array values");
         }
-        return type.marshal(value);
+        return type.marshal(value, symbols);
     }
 
     public void write(Writer writer) throws IOException {
@@ -110,7 +315,7 @@ public class Marshal {
         }
     }
 
-    private static void writeHandler(Writer writer, Handler handler) throws IOException {
+    static void writeHandler(Writer writer, Handler handler) throws IOException {
         if (handler.getType() != HandlerType.FUNCTION) {
             writer.write(handler.getType().getName());
             writer.write(" ");
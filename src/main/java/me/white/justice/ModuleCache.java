@@ -0,0 +1,64 @@
+package me.white.justice;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+
+// stores parsed handlers of source files under the hash of their content and the tool version
+public class ModuleCache {
+    private static final String VERSION = Objects.requireNonNullElse(ModuleCache.class.getPackage().getImplementationVersion(), "dev");
+    private final Path directory;
+
+    public ModuleCache(Path directory) {
+        this.directory = directory;
+    }
+
+    public static String key(byte[] source) {
+        return key(ByteBuffer.wrap(source));
+    }
+
+    public static String key(ByteBuffer source) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((VERSION + "/" + BinaryWriter.VERSION + "/").getBytes(StandardCharsets.UTF_8));
+            digest.update(source);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Nullable
+    public List<Handler> load(String key) {
+        try (SeekableByteChannel channel = Files.newByteChannel(directory.resolve(key + ".bin")); BinaryReader reader = new BinaryReader(Channels.newInputStream(channel), channel.size())) {
+            return reader.readHandlers();
+        } catch (IOException | RuntimeException e) {
+            // a missing or damaged entry is just a miss
+            return null;
+        }
+    }
+
+    public void store(String key, List<Handler> handlers) throws IOException {
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, key, ".tmp");
+        try {
+            try (BinaryWriter writer = new BinaryWriter(Files.newOutputStream(temp))) {
+                writer.writeHandlers(handlers);
+            }
+            // parallel jobs may store the same entry, readers only ever see complete files
+            Files.move(temp, directory.resolve(key + ".bin"), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
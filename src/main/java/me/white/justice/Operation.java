@@ -3,6 +3,8 @@ package me.white.justice;
 import me.white.justice.value.Value;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -58,4 +60,43 @@ public class Operation {
     public List<Operation> getOperations() {
         return operations;
     }
+
+    public void writeBinary(BinaryWriter writer) throws IOException {
+        writer.writeString(name);
+        writer.writeBoolean(isInverted);
+        writer.writeString(delegate);
+        writer.writeString(selector);
+        writer.writeVarInt(arguments.size());
+        for (Map.Entry<String, Value> argument : arguments.entrySet()) {
+            writer.writeString(argument.getKey());
+            writer.writeValue(argument.getValue());
+        }
+        writer.writeVarInt(operations.size());
+        for (Operation operation : operations) {
+            operation.writeBinary(writer);
+        }
+    }
+
+    public static Operation readBinary(BinaryReader reader) throws IOException {
+        String name = reader.readString();
+        boolean isInverted = reader.readBoolean();
+        String delegate = reader.readString();
+        String selector = reader.readString();
+        int argumentCount = reader.readSize();
+        Map<String, Value> arguments = new ArgumentMap(argumentCount);
+        for (int i = 0; i < argumentCount; ++i) {
+            String argument = reader.readString();
+            arguments.put(argument, reader.readValue());
+        }
+        return new Operation(name, isInverted, delegate, selector, arguments, readOperations(reader));
+    }
+
+    static List<Operation> readOperations(BinaryReader reader) throws IOException {
+        int size = reader.readSize();
+        List<Operation> operations = new ArrayList<>(size);
+        for (int i = 0; i < size; ++i) {
+            operations.add(readBinary(reader));
+        }
+        return operations;
+    }
 }
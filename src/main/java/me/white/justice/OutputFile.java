@@ -0,0 +1,134 @@
+package me.white.justice;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+// where a command writes its result: a file, a temporary file moved over the target once complete, or the standard output
+public class OutputFile implements Closeable {
+    public static final String STDOUT = "-";
+    private static final int BUFFER_SIZE = 1 << 16;
+    @Nullable
+    private final Path target;
+    @Nullable
+    private final Path temp;
+    private final WritableByteChannel channel;
+    // writers of the output close what they are given, which must not end the output before commit
+    private final WritableByteChannel view = new WritableByteChannel() {
+        @Override
+        public int write(ByteBuffer source) throws IOException {
+            return channel.write(source);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() { }
+    };
+    @Nullable
+    private Writer writer = null;
+    private boolean isCommitted = false;
+
+    private OutputFile(@Nullable Path target, @Nullable Path temp, WritableByteChannel channel) {
+        this.target = target;
+        this.temp = temp;
+        this.channel = channel;
+    }
+
+    public static boolean isStdout(File file) {
+        return file.getPath().equals(STDOUT);
+    }
+
+    public static OutputFile open(File file, boolean isAtomic) throws IOException {
+        if (isStdout(file)) {
+            return new OutputFile(null, null, new FileOutputStream(FileDescriptor.out).getChannel());
+        }
+        Path target = file.toPath();
+        if (!isAtomic) {
+            return new OutputFile(target, null, FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+        }
+        // the temporary file sits next to the target so that it can be moved in place
+        // it is created like any other output, so the umask applies instead of the owner-only mode of temporary files
+        Path directory = target.toAbsolutePath().getParent();
+        while (true) {
+            Path temp = directory.resolve("." + target.getFileName() + Long.toUnsignedString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+            try {
+                return new OutputFile(target, temp, FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE));
+            } catch (FileAlreadyExistsException ignored) { }
+        }
+    }
+
+    // a replaced target keeps its permissions, as it would when written in place
+    private static void copyPermissions(Path from, Path to) throws IOException {
+        try {
+            Files.setPosixFilePermissions(to, Files.getPosixFilePermissions(from));
+        } catch (NoSuchFileException | UnsupportedOperationException ignored) { }
+    }
+
+    public WritableByteChannel getChannel() {
+        return view;
+    }
+
+    // utf-8 text with large buffered writes
+    public Writer getWriter() {
+        if (writer == null) {
+            writer = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(view), StandardCharsets.UTF_8), BUFFER_SIZE);
+        }
+        return writer;
+    }
+
+    // keeps what was written, the target is only replaced at this point when writing atomically
+    public void commit() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        if (target == null) {
+            return;
+        }
+        if (temp != null && channel instanceof FileChannel file) {
+            file.force(false);
+        }
+        channel.close();
+        if (temp != null) {
+            copyPermissions(target, temp);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        isCommitted = true;
+    }
+
+    // an uncommitted file is removed, an atomic write leaves the previous target untouched
+    @Override
+    public void close() throws IOException {
+        if (target == null) {
+            // the standard output stays open for whatever is printed after
+            if (writer != null) {
+                writer.flush();
+            }
+            return;
+        }
+        if (isCommitted) {
+            return;
+        }
+        channel.close();
+        Path incomplete = temp != null ? temp : target;
+        try {
+            Files.deleteIfExists(incomplete);
+        } catch (IOException e) {
+            throw new IOException("Could not delete incomplete file '" + incomplete + "'", e);
+        }
+    }
+}
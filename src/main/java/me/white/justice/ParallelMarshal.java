@@ -0,0 +1,151 @@
+package me.white.justice;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.*;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// decodes modules in order and renders every handler on its own task, while keeping the order of modules and handlers
+// only a bounded number of handlers are rendered ahead of the writer, so memory does not grow with the output
+public class ParallelMarshal implements AutoCloseable {
+    // handlers rendered ahead per thread
+    private static final int RENDER_AHEAD = 16;
+    private final ExecutorService executor;
+    private final int window;
+    private final List<Path> paths = new ArrayList<>();
+    private final SymbolTable symbols = new SymbolTable();
+
+    public ParallelMarshal(int threads) {
+        executor = Executors.newFixedThreadPool(threads);
+        window = threads * RENDER_AHEAD;
+    }
+
+    public synchronized void marshal(Path path) {
+        paths.add(path);
+    }
+
+    private String marshalHandler(JsonObject object) throws MarshalException, IOException {
+        StringWriter writer = new StringWriter();
+        try {
+            Handler handler = Marshal.marshalHandler(object, symbols);
+            // items are decoded while writing, so their errors are reported like the rest of the module
+            Marshal.writeHandler(writer, handler);
+        } catch (JsonParseException | IllegalStateException | UnsupportedOperationException | NumberFormatException | MarshalException e) {
+            throw new MarshalException("Malformed module: " + e.getMessage());
+        }
+        writer.write("\n");
+        return writer.toString();
+    }
+
+    // writes handlers as soon as they and all before them are ready, errors of all modules are reported together
+    // nothing is written past the first module that failed
+    public synchronized void write(Writer writer) throws MarshalException, IOException {
+        Failures failures = new Failures(paths.size());
+        Deque<Rendering> pending = new ArrayDeque<>();
+        try {
+            for (int i = 0; i < paths.size(); ++i) {
+                int module = i;
+                Path path = paths.get(i);
+                try (Reader reader = SourceFile.map(path).getReader()) {
+                    Marshal.readModule(reader, json -> {
+                        JsonObject handler = JsonParser.parseReader(json).getAsJsonObject();
+                        if (pending.size() == window) {
+                            writeNext(pending, writer, failures);
+                        }
+                        pending.add(new Rendering(module, executor.submit(() -> marshalHandler(handler))));
+                    });
+                } catch (NoSuchFileException e) {
+                    failures.fail(i, "File '" + path + "' does not exist");
+                } catch (IOException e) {
+                    failures.fail(i, "Could not read file '" + path + "': " + e.getMessage());
+                } catch (MarshalException e) {
+                    failures.fail(i, "In file '" + path + "':\n" + e.getMessage());
+                }
+            }
+            while (!pending.isEmpty()) {
+                writeNext(pending, writer, failures);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (failures.first != Integer.MAX_VALUE) {
+            List<String> messages = new ArrayList<>();
+            for (String message : failures.messages) {
+                if (message != null) {
+                    messages.add(message);
+                }
+            }
+            throw new MarshalException(String.join("\n", messages));
+        }
+    }
+
+    // write failures are unchecked, so that they are kept apart from read failures of the module being decoded
+    private void writeNext(Deque<Rendering> pending, Writer writer, Failures failures) throws MarshalException {
+        Rendering rendering = pending.remove();
+        String rendered;
+        try {
+            rendered = rendering.handler.get();
+        } catch (ExecutionException e) {
+            if (!(e.getCause() instanceof MarshalException cause)) {
+                throw new RuntimeException(e.getCause());
+            }
+            failures.fail(rendering.module, "In file '" + paths.get(rendering.module) + "':\n" + cause.getMessage());
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MarshalException("Interrupted");
+        }
+        if (rendering.module >= failures.first) {
+            return;
+        }
+        try {
+            writer.write(rendered);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    // the first error of every module
+    private static class Failures {
+        private final String[] messages;
+        // the earliest module that failed
+        private int first = Integer.MAX_VALUE;
+
+        private Failures(int modules) {
+            messages = new String[modules];
+        }
+
+        private void fail(int module, String message) {
+            if (messages[module] == null) {
+                messages[module] = message;
+            }
+            first = Math.min(first, module);
+        }
+    }
+
+    private static class Rendering {
+        private final int module;
+        private final Future<String> handler;
+
+        private Rendering(int module, Future<String> handler) {
+            this.module = module;
+            this.handler = handler;
+        }
+    }
+}
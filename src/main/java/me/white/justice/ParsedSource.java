@@ -0,0 +1,183 @@
+package me.white.justice;
+
+import me.white.justice.lexer.Lexer;
+import me.white.justice.lexer.LineIndex;
+import me.white.justice.lexer.TokenStream;
+import me.white.justice.lexer.TokenType;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+// a parsed source that remembers which range of it every handler came from, for editors
+// an edit only reparses the handlers it touches, the others are taken over at their shifted range
+// offsets are those of getSource(), which has its line breaks normalized
+public class ParsedSource {
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+    private final CharSequence source;
+    private final LineIndex lines;
+    private final List<Range> ranges;
+    private final List<Handler> handlers = new ArrayList<>();
+    private final List<ParsingException> errors = new ArrayList<>();
+
+    private ParsedSource(Lexer lexer, List<Range> ranges) {
+        this.source = lexer.getBuffer();
+        // the lexer already has it if it reported an error
+        this.lines = lexer.getLines();
+        this.ranges = ranges;
+        for (Range range : ranges) {
+            if (range.handler != null) {
+                handlers.add(range.handler);
+            }
+            errors.addAll(range.errors);
+        }
+    }
+
+    public static ParsedSource parse(CharSequence source, SymbolTable symbols) {
+        Lexer lexer = new Lexer(source);
+        return new ParsedSource(lexer, parseRanges(lexer, symbols, List.of(), 0, 0, 0));
+    }
+
+    // replaces the removed characters at the offset with the inserted text
+    // reparsed handlers get a table of their own, so an editing session doesn't intern every name it ever typed
+    // taken over handlers keep the instances they were parsed with
+    public ParsedSource edit(int offset, int removed, CharSequence inserted) {
+        Objects.checkFromIndexSize(offset, removed, source.length());
+        StringBuilder builder = new StringBuilder(source.length() - removed + inserted.length());
+        builder.append(source, 0, offset).append(inserted).append(source, offset + removed, source.length());
+        CharSequence edited = Lexer.normalize(builder.toString());
+        int shift = edited.length() - source.length();
+        Lexer lexer = new Lexer(edited, 0);
+        return new ParsedSource(lexer, parseRanges(lexer, new SymbolTable(), ranges, offset, offset + removed, shift));
+    }
+
+    // a range is taken over when the lexer gets to its start, as long as all of its text is outside the edit
+    // handlers with errors are always parsed again, since their messages hold the old lines
+    private static List<Range> parseRanges(Lexer lexer, SymbolTable symbols, List<Range> known, int editStart, int editEnd, int shift) {
+        List<Range> ranges = new ArrayList<>();
+        int next = 0;
+        while (lexer.hasNext()) {
+            int pos = lexer.getReadPos();
+            Range reused = null;
+            while (next < known.size()) {
+                Range range = known.get(next);
+                int start = range.start < editStart ? range.start : Math.max(range.start + shift, editStart);
+                if (start > pos) {
+                    break;
+                }
+                next += 1;
+                if (start == pos && range.errors.isEmpty() && (range.end < editStart || range.start >= editEnd)) {
+                    reused = range.start < editStart ? range : range.shift(shift);
+                    break;
+                }
+            }
+            if (reused != null) {
+                ranges.add(reused);
+                lexer.seek(reused.end);
+                continue;
+            }
+            List<Handler> handlers = new ArrayList<>(1);
+            List<ParsingException> errors = new ArrayList<>();
+            boolean hasNext = Parser.parseNext(lexer, symbols, handlers, errors);
+            int end = hasNext ? lexer.getReadPos() : lexer.getBuffer().length();
+            Range range = new Range(pos, end, handlers.isEmpty() ? null : handlers.getFirst(), errors);
+            range.keepTokens(lexer.getTokens());
+            ranges.add(range);
+            if (!hasNext) {
+                break;
+            }
+        }
+        return ranges;
+    }
+
+    public CharSequence getSource() {
+        return source;
+    }
+
+    public LineIndex getLines() {
+        return lines;
+    }
+
+    // handlers that parsed, including those that recovered from errors in their operations
+    public List<Handler> getHandlers() {
+        return Collections.unmodifiableList(handlers);
+    }
+
+    public List<ParsingException> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    public interface TokenConsumer {
+        void accept(TokenType type, int pos, int length);
+    }
+
+    // tokens in the order they were read, without those inside item data
+    public void forEachToken(TokenConsumer consumer) {
+        for (Range range : ranges) {
+            for (int i = 0; i < range.types.length; ++i) {
+                consumer.accept(TOKEN_TYPES[range.types[i]], range.start + range.starts[i], range.lengths[i]);
+            }
+        }
+    }
+
+    private static class Range {
+        private final int start;
+        // where the token after the handler starts
+        private final int end;
+        @Nullable
+        private final Handler handler;
+        private final List<ParsingException> errors;
+        // tokens of the range with starts relative to it, so they stay valid when it is shifted
+        private byte[] types = new byte[0];
+        private int[] starts = new int[0];
+        private int[] lengths = new int[0];
+
+        private Range(int start, int end, @Nullable Handler handler, List<ParsingException> errors) {
+            this.start = start;
+            this.end = end;
+            this.handler = handler;
+            this.errors = errors;
+        }
+
+        // the stream only grows in source order, so the tokens of the range are at its end
+        private void keepTokens(TokenStream tokens) {
+            int to = tokens.size();
+            while (to > 0 && tokens.getPos(to - 1) >= end) {
+                to -= 1;
+            }
+            int from = to;
+            while (from > 0 && tokens.getPos(from - 1) >= start) {
+                from -= 1;
+            }
+            int count = 0;
+            types = new byte[to - from];
+            starts = new int[to - from];
+            lengths = new int[to - from];
+            for (int i = from; i < to; ++i) {
+                if (tokens.isOf(i, TokenType.EOF)) {
+                    continue;
+                }
+                types[count] = (byte)tokens.getType(i).ordinal();
+                starts[count] = tokens.getPos(i) - start;
+                lengths[count] = tokens.getLength(i);
+                count += 1;
+            }
+            if (count < types.length) {
+                types = Arrays.copyOf(types, count);
+                starts = Arrays.copyOf(starts, count);
+                lengths = Arrays.copyOf(lengths, count);
+            }
+        }
+
+        private Range shift(int shift) {
+            Range range = new Range(start + shift, end + shift, handler, errors);
+            range.types = types;
+            range.starts = starts;
+            range.lengths = lengths;
+            return range;
+        }
+    }
+}
@@ -1,23 +1,44 @@
 package me.white.justice;
 
-import com.google.gson.stream.JsonWriter;
 import me.white.justice.lexer.Lexer;
-import me.white.justice.lexer.Token;
+import me.white.justice.lexer.TokenStream;
 import me.white.justice.lexer.TokenType;
 import me.white.justice.value.*;
 
-import java.io.IOException;
-import java.io.Writer;
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
 
 public class Parser {
+    private static final int MIN_CHUNK_LENGTH = 1 << 16;
+    private static final int WRITE_BATCH_SIZE = 32;
+    private static final int WRITE_AHEAD = 64;
     private final List<Handler> handlers = new ArrayList<>();
+    private final SymbolTable symbols;
     private boolean isCompact = false;
 
-    public Parser() { }
+    public Parser() {
+        this(new SymbolTable());
+    }
+
+    public Parser(SymbolTable symbols) {
+        this.symbols = symbols;
+    }
+
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
 
     public boolean isCompact() {
         return isCompact;
@@ -27,152 +48,386 @@ public class Parser {
         isCompact = compact;
     }
 
-    public void parse(String source) throws ParsingException {
-        Lexer lexer = new Lexer(source);
-        while (lexer.hasNext()) {
-            handlers.add(parseHandler(lexer));
+    public void parse(CharSequence source) throws ParsingException {
+        handlers.addAll(parseHandlers(new Lexer(source), symbols));
+    }
+
+    public void parse(Reader reader) throws ParsingException, IOException {
+        handlers.addAll(parseHandlers(new Lexer(reader), symbols));
+    }
+
+    public void addHandlers(List<Handler> handlers) {
+        this.handlers.addAll(handlers);
+    }
+
+    public static List<Handler> parseHandlers(CharSequence source, SymbolTable symbols) throws ParsingException {
+        return parseHandlers(new Lexer(source), symbols);
+    }
+
+    public static List<Handler> parseHandlers(Reader reader, SymbolTable symbols) throws ParsingException, IOException {
+        return parseHandlers(new Lexer(reader), symbols);
+    }
+
+    // keeps parsing past broken operations and handlers, so all errors of a source are reported at once
+    private static List<Handler> parseHandlers(Lexer lexer, SymbolTable symbols) throws ParsingException {
+        List<Handler> handlers = new ArrayList<>();
+        List<ParsingException> errors = new ArrayList<>();
+        parseUntil(lexer, lexer.getBuffer().length(), symbols, handlers, errors);
+        if (!errors.isEmpty()) {
+            throw new ParsingException(errors);
+        }
+        return handlers;
+    }
+
+    // parses stretches of whole handlers on the pool, with the same handlers and errors as parsing the source in one go
+    public static List<Handler> parseHandlers(CharSequence source, SymbolTable symbols, ForkJoinPool pool) throws ParsingException {
+        CharSequence buffer = Lexer.normalize(source);
+        List<Chunk> chunks = split(buffer, Math.max(MIN_CHUNK_LENGTH, buffer.length() / (pool.getParallelism() * 4)));
+        if (chunks.size() == 1) {
+            return parseHandlers(new Lexer(buffer), symbols);
+        }
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int i = 0; i < chunks.size(); ++i) {
+            Chunk chunk = chunks.get(i);
+            int end = i + 1 < chunks.size() ? chunks.get(i + 1).start : buffer.length();
+            tasks.add(pool.submit(() -> chunk.parse(buffer, end, symbols)));
+        }
+        List<Handler> handlers = new ArrayList<>();
+        List<ParsingException> errors = new ArrayList<>();
+        int pos = 0;
+        for (int i = 0; i < chunks.size(); ++i) {
+            tasks.get(i).join();
+            Chunk chunk = chunks.get(i);
+            if (pos < chunk.start) {
+                // a broken handler ran into the chunk before, it is parsed on from where that handler ended
+                pos = parseUntil(new Lexer(buffer, pos), chunk.start, symbols, handlers, errors);
+            }
+            if (pos != chunk.start) {
+                continue;
+            }
+            handlers.addAll(chunk.handlers);
+            errors.addAll(chunk.errors);
+            pos = chunk.stop;
+        }
+        if (pos < buffer.length()) {
+            parseUntil(new Lexer(buffer, pos), buffer.length(), symbols, handlers, errors);
+        }
+        if (!errors.isEmpty()) {
+            throw new ParsingException(errors);
+        }
+        return handlers;
+    }
+
+    // returns where the next handler starts, which is past the given offset when a broken handler ran over it
+    private static int parseUntil(Lexer lexer, int end, SymbolTable symbols, List<Handler> handlers, List<ParsingException> errors) {
+        while (lexer.hasNext() && lexer.getReadPos() < end) {
+            if (!parseNext(lexer, symbols, handlers, errors)) {
+                return lexer.getBuffer().length();
+            }
         }
+        return lexer.hasNext() ? lexer.getReadPos() : lexer.getBuffer().length();
     }
 
-    private static Handler parseHandler(Lexer lexer) throws ParsingException {
+    // finds where top level handlers start by the depth of braces outside of quotes, at least the given length apart
+    // a wrong guess in a broken source only costs a part parsed again
+    private static List<Chunk> split(CharSequence buffer, int length) {
+        List<Chunk> chunks = new ArrayList<>();
+        chunks.add(new Chunk(0, 1, 1));
+        int size = buffer.length();
+        int depth = 0;
+        int row = 1;
+        int lineStart = 0;
+        char quote = 0;
+        boolean isBoundary = false;
+        for (int i = 0; i < size; ++i) {
+            char ch = buffer.charAt(i);
+            if (ch == '\n') {
+                row += 1;
+                lineStart = i + 1;
+                // quotes close at the end of their line
+                quote = 0;
+                continue;
+            }
+            if (quote != 0) {
+                if (ch == '\\' && i + 1 < size) {
+                    i += 1;
+                    if (buffer.charAt(i) == '\n') {
+                        row += 1;
+                        lineStart = i + 1;
+                    }
+                } else if (ch == quote) {
+                    quote = 0;
+                }
+                continue;
+            }
+            if (isBoundary && !Lexer.isWhitespace(ch)) {
+                isBoundary = false;
+                if (i - chunks.getLast().start >= length) {
+                    chunks.add(new Chunk(i, row, i - lineStart + 1));
+                }
+            }
+            switch (ch) {
+                case '"', '`', '\'' -> quote = ch;
+                case '{' -> depth += 1;
+                case '}' -> {
+                    depth = Math.max(0, depth - 1);
+                    isBoundary = depth == 0;
+                }
+            }
+        }
+        return chunks;
+    }
+
+    // parses the handler ahead, a broken one is skipped as a whole after its errors are reported
+    // returns false once the source has ended inside a broken handler
+    static boolean parseNext(Lexer lexer, SymbolTable symbols, List<Handler> handlers, List<ParsingException> errors) {
+        int start = -1;
+        try {
+            start = lexer.peekToken();
+            handlers.add(parseHandler(lexer, symbols, errors));
+            return true;
+        } catch (ParsingException e) {
+            report(errors, e);
+            return skip(lexer, start, true);
+        }
+    }
+
+    private static void report(List<ParsingException> errors, ParsingException error) {
+        // unclosed blocks fail at the same place on every level
+        if (errors.isEmpty() || !errors.getLast().getMessage().equals(error.getMessage())) {
+            errors.add(error);
+        }
+    }
+
+    // skips a broken operation or handler from its start, so its braces stay balanced
+    // returns false once the source has ended
+    private static boolean skip(Lexer lexer, int start, boolean isHandler) {
+        TokenStream tokens = lexer.getTokens();
+        if (start != -1) {
+            lexer.unread(start);
+        }
+        int depth = 0;
+        while (true) {
+            int token = lexer.peekValidToken();
+            switch (tokens.getType(token)) {
+                case EOF -> {
+                    return false;
+                }
+                case BLOCK_OPEN -> depth += 1;
+                case BLOCK_CLOSE -> {
+                    // a brace at the start of a line closes its handler, so an unbalanced one does not run into the handlers after it
+                    if (isLineStart(lexer.getBuffer(), tokens.getPos(token))) {
+                        if (!isHandler) {
+                            // tokens the broken operation lexed ahead may have passed over item data, they are lexed again
+                            lexer.revert();
+                            return true;
+                        }
+                        depth = Math.min(depth, 1);
+                    }
+                    if (depth == 0 && !isHandler) {
+                        // closes the enclosing block, which is left to its parser
+                        return true;
+                    }
+                    if (depth <= 1) {
+                        lexer.readValidToken();
+                        if (isHandler) {
+                            // as above, the handler may have been lexed past where it is now cut off
+                            lexer.revert();
+                            return true;
+                        }
+                        if (!isArgumentEnd(tokens, lexer.peekValidToken())) {
+                            return true;
+                        }
+                        // item data and lists close inside arguments, the operation goes on after them
+                        depth = 0;
+                        continue;
+                    }
+                    depth -= 1;
+                }
+                case EOL -> {
+                    if (depth == 0 && !isHandler) {
+                        lexer.readValidToken();
+                        return true;
+                    }
+                }
+            }
+            lexer.readValidToken();
+        }
+    }
+
+    private static boolean isLineStart(CharSequence buffer, int pos) {
+        return pos == 0 || buffer.charAt(pos - 1) == '\n';
+    }
+
+    private static boolean isArgumentEnd(TokenStream tokens, int token) {
+        return tokens.isOf(token, TokenType.ARGS_CLOSE) || tokens.isOf(token, TokenType.COMMA) || tokens.isOf(token, TokenType.EOL);
+    }
+
+    private static Handler parseHandler(Lexer lexer, SymbolTable symbols, List<ParsingException> errors) throws ParsingException {
+        TokenStream tokens = lexer.getTokens();
         List<Operation> operations = new ArrayList<>();
         HandlerType type = HandlerType.FUNCTION;
-        Token name = lexer.expectIdentifier();
-        if (!name.isOf(TokenType.IDENTIFIER) && lexer.peek().getType().isIdentifier()) {
-            HandlerType constitute = HandlerType.byName(name.getString());
+        int name = lexer.expectIdentifierToken();
+        if (!tokens.isOf(name, TokenType.IDENTIFIER) && tokens.getType(lexer.peekToken()).isIdentifier()) {
+            HandlerType constitute = HandlerType.byName(tokens.getString(name));
             if (constitute != null) {
                 type = constitute;
-                name = lexer.expectIdentifier();
+                name = lexer.expectIdentifierToken();
             }
         }
-        lexer.expect(TokenType.BLOCK_OPEN);
-        while (lexer.hasNext() && !lexer.peek().isOf(TokenType.BLOCK_CLOSE)) {
-            if (lexer.peek().isOf(TokenType.EOL)) {
-                lexer.read();
-                continue;
+        lexer.expectToken(TokenType.BLOCK_OPEN);
+        parseBlock(lexer, symbols, errors, operations, true);
+        lexer.expectToken(TokenType.BLOCK_CLOSE);
+        return new Handler(symbols.intern(tokens.getString(name)), type, operations);
+    }
+
+    private static void parseBlock(Lexer lexer, SymbolTable symbols, List<ParsingException> errors, List<Operation> operations, boolean allowEmpty) throws ParsingException {
+        TokenStream tokens = lexer.getTokens();
+        while (lexer.hasNext()) {
+            int token = -1;
+            try {
+                token = lexer.peekToken();
+                if (tokens.isOf(token, TokenType.BLOCK_CLOSE)) {
+                    return;
+                }
+                if (allowEmpty && tokens.isOf(token, TokenType.EOL)) {
+                    lexer.readToken();
+                    continue;
+                }
+                operations.add(parseOperation(lexer, symbols, errors));
+            } catch (ParsingException e) {
+                report(errors, e);
+                if (!skip(lexer, token, false)) {
+                    return;
+                }
             }
-            operations.add(parseOperation(lexer));
         }
-        lexer.expect(TokenType.BLOCK_CLOSE);
-        return new Handler(name.getString(), type, operations);
     }
 
-    private static Operation parseOperation(Lexer lexer) throws ParsingException {
+    private static Operation parseOperation(Lexer lexer, SymbolTable symbols, List<ParsingException> errors) throws ParsingException {
+        TokenStream tokens = lexer.getTokens();
         boolean isInverted = false;
-        Token name = lexer.expectIdentifier();
-        Token delegate = null;
+        int name = lexer.expectIdentifierToken();
+        int delegate = -1;
         String selector = null;
-        Map<String, Value> arguments = new HashMap<>();
+        Map<String, Value> arguments = new ArgumentMap();
         List<Operation> operations = new ArrayList<>();
-        if (lexer.peek().getType().isIdentifier()) {
-            delegate = lexer.expectIdentifier();
+        if (tokens.getType(lexer.peekToken()).isIdentifier()) {
+            delegate = lexer.expectIdentifierToken();
         }
-        if (name.isOf(TokenType.LITERAL) && name.getString().equals("not")) {
+        if (isNot(tokens, name)) {
             isInverted = true;
-            if (delegate == null) {
+            if (delegate == -1) {
                 throw lexer.error(name, "Inversion without an action");
             }
             name = delegate;
-            delegate = null;
-        } else if (delegate != null && delegate.isOf(TokenType.LITERAL) && delegate.getString().equals("not")) {
+            delegate = -1;
+        } else if (delegate != -1 && isNot(tokens, delegate)) {
             isInverted = true;
-            delegate = lexer.expectIdentifier();
-        }
-        if (lexer.peek().isOf(TokenType.SELECTOR_OPEN)) {
-            lexer.read();
-            selector = lexer.expect(TokenType.LITERAL).getString();
-            lexer.expect(TokenType.SELECTOR_CLOSE);
-        }
-        if (lexer.peek().isOf(TokenType.ARGS_OPEN)) {
-            lexer.read();
-            while (lexer.hasNext() && !lexer.peek().isOf(TokenType.ARGS_CLOSE)) {
-                String argument = lexer.expect(TokenType.LITERAL).getString();
-                lexer.expect(TokenType.EQUALS);
-                Value value = parseValue(lexer, true);
+            delegate = lexer.expectIdentifierToken();
+        }
+        if (tokens.isOf(lexer.peekToken(), TokenType.SELECTOR_OPEN)) {
+            lexer.readToken();
+            selector = symbols.intern(tokens.getString(lexer.expectToken(TokenType.LITERAL)));
+            lexer.expectToken(TokenType.SELECTOR_CLOSE);
+        }
+        if (tokens.isOf(lexer.peekToken(), TokenType.ARGS_OPEN)) {
+            lexer.readToken();
+            while (lexer.hasNext() && !tokens.isOf(lexer.peekToken(), TokenType.ARGS_CLOSE)) {
+                String argument = symbols.intern(tokens.getString(lexer.expectToken(TokenType.LITERAL)));
+                lexer.expectToken(TokenType.EQUALS);
+                Value value = parseValue(lexer, symbols, true);
                 arguments.put(argument, value);
-                if (!lexer.peek().isOf(TokenType.ARGS_CLOSE)) {
-                    lexer.expect(TokenType.COMMA);
+                if (!tokens.isOf(lexer.peekToken(), TokenType.ARGS_CLOSE)) {
+                    lexer.expectToken(TokenType.COMMA);
                 }
             }
-            lexer.expect(TokenType.ARGS_CLOSE);
+            lexer.expectToken(TokenType.ARGS_CLOSE);
         }
-        if (lexer.peek().isOf(TokenType.BLOCK_OPEN)) {
-            lexer.read();
-            while (lexer.hasNext() && !lexer.peek().isOf(TokenType.BLOCK_CLOSE)) {
-                operations.add(parseOperation(lexer));
-            }
-            lexer.expect(TokenType.BLOCK_CLOSE);
+        if (tokens.isOf(lexer.peekToken(), TokenType.BLOCK_OPEN)) {
+            lexer.readToken();
+            parseBlock(lexer, symbols, errors, operations, false);
+            lexer.expectToken(TokenType.BLOCK_CLOSE);
         } else {
-            lexer.expect(TokenType.EOL);
+            lexer.expectToken(TokenType.EOL);
         }
-        return new Operation(name.getString(), isInverted, delegate == null ? null : delegate.getString(), selector, arguments, operations);
+        return new Operation(symbols.intern(tokens.getString(name)), isInverted, delegate == -1 ? null : symbols.intern(tokens.getString(delegate)), selector, arguments, operations);
+    }
+
+    private static boolean isNot(TokenStream tokens, int token) {
+        return tokens.isOf(token, TokenType.LITERAL) && tokens.getLength(token) == 3 && tokens.getString(token).equals("not");
     }
 
-    private static Value parseValue(Lexer lexer, boolean allowLists) throws ParsingException {
-        Token token = lexer.read();
-        return switch (token.getType()) {
+    private static Value parseValue(Lexer lexer, SymbolTable symbols, boolean allowLists) throws ParsingException {
+        TokenStream tokens = lexer.getTokens();
+        int token = lexer.readToken();
+        return switch (tokens.getType(token)) {
             case LITERAL -> {
-                String name = token.getString();
-                if (name.length() == 1) {
-                    char prefix = name.charAt(0);
-                    Token next = lexer.peek();
-                    if (next.isOf(TokenType.STRING)) {
-                        lexer.read();
+                if (tokens.getLength(token) == 1) {
+                    char prefix = lexer.getBuffer().charAt(tokens.getPos(token));
+                    int next = lexer.peekToken();
+                    if (tokens.isOf(next, TokenType.STRING)) {
+                        lexer.readToken();
                         TextParsing parsing = TextParsing.byPrefix(prefix);
                         if (parsing == null) {
                             throw lexer.error(token, "Invalid text parsing");
                         }
-                        yield new TextValue(next.getString(), parsing);
+                        yield new TextValue(tokens.getString(next), parsing);
                     }
-                    if (next.isOf(TokenType.IDENTIFIER)) {
-                        lexer.read();
+                    if (tokens.isOf(next, TokenType.IDENTIFIER)) {
+                        lexer.readToken();
                         VariableScope scope = VariableScope.byPrefix(prefix);
                         if (scope == null) {
                             throw lexer.error(token, "Invalid variable scope");
                         }
-                        yield new VariableValue(next.getString(), scope);
+                        yield new VariableValue(symbols.intern(tokens.getString(next)), scope);
                     }
                 }
+                String name = tokens.getString(token);
                 ValueType type = ValueType.byName(name);
-                if (type != null && type.isFactory() && lexer.peek().isOf(TokenType.BLOCK_OPEN)) {
-                    yield type.parse(lexer);
+                if (type != null && type.isFactory() && tokens.isOf(lexer.peekToken(), TokenType.BLOCK_OPEN)) {
+                    yield type.parse(lexer, symbols);
                 }
-                yield new VariableValue(name, VariableScope.LOCAL);
+                yield new VariableValue(symbols.intern(name), VariableScope.LOCAL);
             }
-            case IDENTIFIER -> new VariableValue(token.getString(), VariableScope.LOCAL);
-            case STRING -> new TextValue(token.getString(), TextParsing.PLAIN);
-            case NUMBER -> new NumberValue(token.getNumber());
-            case PLACEHOLDER -> new NumberValue(token.getString());
-            case ENUM -> new EnumValue(token.getString());
+            case IDENTIFIER -> new VariableValue(symbols.intern(tokens.getString(token)), VariableScope.LOCAL);
+            case STRING -> new TextValue(tokens.getString(token), TextParsing.PLAIN);
+            case NUMBER -> new NumberValue(tokens.getNumber(token));
+            case PLACEHOLDER -> new NumberValue(tokens.getString(token));
+            case ENUM -> new EnumValue(tokens.getString(token));
             case BLOCK_OPEN -> {
                 if (!allowLists) {
+                    lexer.unread(token);
                     throw lexer.error(token, "Cannot recurse list values");
                 }
                 ArrayValue values = new ArrayValue();
-                while (lexer.hasNext() && !lexer.peek().isOf(TokenType.BLOCK_CLOSE)) {
-                    values.add(parseValue(lexer, false));
-                    if (!lexer.peek().isOf(TokenType.BLOCK_CLOSE)) {
-                        lexer.expect(TokenType.COMMA);
+                while (lexer.hasNext() && !tokens.isOf(lexer.peekToken(), TokenType.BLOCK_CLOSE)) {
+                    values.add(parseValue(lexer, symbols, false));
+                    if (!tokens.isOf(lexer.peekToken(), TokenType.BLOCK_CLOSE)) {
+                        lexer.expectToken(TokenType.COMMA);
                     }
                 }
-                lexer.expect(TokenType.BLOCK_CLOSE);
+                lexer.expectToken(TokenType.BLOCK_CLOSE);
                 yield values;
             }
             case SELECTOR_OPEN -> {
                 String selector = null;
-                if (!lexer.peek().isOf(TokenType.SELECTOR_CLOSE)) {
-                    selector = lexer.expect(TokenType.LITERAL).getString();
+                if (!tokens.isOf(lexer.peekToken(), TokenType.SELECTOR_CLOSE)) {
+                    selector = symbols.intern(tokens.getString(lexer.expectToken(TokenType.LITERAL)));
                 }
-                lexer.expect(TokenType.SELECTOR_CLOSE);
-                String name = lexer.expectIdentifier().getString();
+                lexer.expectToken(TokenType.SELECTOR_CLOSE);
+                String name = symbols.intern(tokens.getString(lexer.expectIdentifierToken()));
                 yield new GameValue(name, selector);
             }
-            default -> throw lexer.error(token, "Expected value");
+            default -> {
+                lexer.unread(token);
+                throw lexer.error(token, "Expected value");
+            }
         };
     }
 
-    public void write(Writer writer) throws IOException {
-        try (JsonWriter json = new JsonWriter(writer)) {
+    public void write(WritableByteChannel channel) throws IOException {
+        try (JsonEmitter json = new JsonEmitter(channel)) {
             json.beginObject();
             json.name("handlers");
             json.beginArray();
@@ -184,7 +439,74 @@ public class Parser {
         }
     }
 
-    private static void writeHandler(JsonWriter writer, Handler handler, int position) throws IOException {
+    // renders batches of handlers into their own buffers on the pool, which are written out in order
+    // only a limited number of batches is rendered ahead, so the module is never held in memory at once
+    public void write(WritableByteChannel channel, ExecutorService pool) throws IOException {
+        Deque<Future<byte[]>> pending = new ArrayDeque<>();
+        try (JsonEmitter json = new JsonEmitter(channel)) {
+            json.beginObject();
+            json.name("handlers");
+            json.beginArray();
+            for (int start = 0; start < handlers.size(); start += WRITE_BATCH_SIZE) {
+                int from = start;
+                int to = Math.min(handlers.size(), start + WRITE_BATCH_SIZE);
+                pending.add(pool.submit(() -> writeHandlers(from, to)));
+                if (pending.size() > WRITE_AHEAD) {
+                    json.rawValues(await(pending.remove()));
+                }
+            }
+            while (!pending.isEmpty()) {
+                json.rawValues(await(pending.remove()));
+            }
+            json.endArray();
+            json.endObject();
+        } finally {
+            for (Future<byte[]> batch : pending) {
+                batch.cancel(true);
+            }
+        }
+    }
+
+    private byte[] writeHandlers(int from, int to) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (JsonEmitter json = new JsonEmitter(bytes)) {
+            for (int i = from; i < to; ++i) {
+                writeHandler(json, handlers.get(i), isCompact ? 0 : i);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] await(Future<byte[]> batch) throws IOException {
+        try {
+            return batch.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing handlers");
+        } catch (ExecutionException e) {
+            switch (e.getCause()) {
+                case IOException cause -> throw cause;
+                case RuntimeException cause -> throw cause;
+                case Error cause -> throw cause;
+                default -> throw new IOException(e.getCause());
+            }
+        }
+    }
+
+    public void write(OutputStream output) throws IOException {
+        write(Channels.newChannel(output));
+    }
+
+    // the module is emitted as bytes, text targets get it through an in-memory copy
+    public void write(Writer writer) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        write(output);
+        try (writer) {
+            writer.write(output.toString(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void writeHandler(JsonEmitter writer, Handler handler, int position) throws IOException {
         writer.beginObject();
         writer.name("position");
         writer.value(position);
@@ -202,7 +524,7 @@ public class Parser {
         writer.endObject();
     }
 
-    private static void writeOperation(JsonWriter writer, Operation operation) throws IOException {
+    private static void writeOperation(JsonEmitter writer, Operation operation) throws IOException {
         writer.beginObject();
         writer.name("action");
         writer.value(operation.getName());
@@ -246,4 +568,23 @@ public class Parser {
         }
         writer.endObject();
     }
+
+    private static class Chunk {
+        private final int start;
+        private final int row;
+        private final int column;
+        private final List<Handler> handlers = new ArrayList<>();
+        private final List<ParsingException> errors = new ArrayList<>();
+        private int stop;
+
+        private Chunk(int start, int row, int column) {
+            this.start = start;
+            this.row = row;
+            this.column = column;
+        }
+
+        private void parse(CharSequence buffer, int end, SymbolTable symbols) {
+            stop = parseUntil(new Lexer(buffer, start, row, column), end, symbols, handlers, errors);
+        }
+    }
 }
@@ -1,7 +1,52 @@
 package me.white.justice;
 
+import java.util.List;
+
 public class ParsingException extends Exception {
+    private final List<ParsingException> errors;
+    // where the error is in the source, -1 when it is not known
+    private final int pos;
+    private final int length;
+    private final String reason;
+
     public ParsingException(String message) {
+        this(message, -1, 0, message);
+    }
+
+    // the message shows the error in its line, the reason is what went wrong on its own
+    public ParsingException(String message, int pos, int length, String reason) {
         super(message);
+        errors = List.of();
+        this.pos = pos;
+        this.length = length;
+        this.reason = reason;
+    }
+
+    // every error found in a source, in the order they were found
+    public ParsingException(List<ParsingException> errors) {
+        super(String.join("\n", errors.stream().map(Throwable::getMessage).toList()));
+        this.errors = List.copyOf(errors);
+        pos = -1;
+        length = 0;
+        reason = getMessage();
+    }
+
+    public List<ParsingException> getErrors() {
+        if (errors.isEmpty()) {
+            return List.of(this);
+        }
+        return errors;
+    }
+
+    public int getPos() {
+        return pos;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public String getReason() {
+        return reason;
     }
 }
@@ -0,0 +1,121 @@
+package me.white.justice;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// an input file mapped into memory instead of being copied onto the heap, or read onto it by long-running modes
+// ascii text is read straight from the bytes, anything else is decoded once
+public class SourceFile {
+    private final ByteBuffer bytes;
+
+    private SourceFile(ByteBuffer bytes) {
+        this.bytes = bytes;
+    }
+
+    // for a single run, a file cut short while mapped fails reading it with an InternalError
+    public static SourceFile map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            return new SourceFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    // for processes that outlive their inputs, which may be rewritten at any time
+    // no mapping is left behind to fail on truncation, or to keep editors on windows from saving the file
+    public static SourceFile read(Path path) throws IOException {
+        return new SourceFile(ByteBuffer.wrap(Files.readAllBytes(path)));
+    }
+
+    public ByteBuffer getBytes() {
+        return bytes.duplicate();
+    }
+
+    public CharSequence getText() throws CharacterCodingException {
+        int length = bytes.limit();
+        for (int i = 0; i < length; ++i) {
+            if (bytes.get(i) < 0) {
+                return StandardCharsets.UTF_8.newDecoder().decode(getBytes());
+            }
+        }
+        return new AsciiSequence(bytes, 0, length);
+    }
+
+    // decodes in chunks as the reader is consumed, for the streaming json reader
+    public Reader getReader() {
+        ByteBuffer source = getBytes();
+        ReadableByteChannel channel = new ReadableByteChannel() {
+            private boolean isOpen = true;
+
+            @Override
+            public int read(ByteBuffer target) {
+                if (!source.hasRemaining()) {
+                    return -1;
+                }
+                int length = Math.min(target.remaining(), source.remaining());
+                target.put(source.slice(source.position(), length));
+                source.position(source.position() + length);
+                return length;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return isOpen;
+            }
+
+            @Override
+            public void close() {
+                isOpen = false;
+            }
+        };
+        return Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(), -1);
+    }
+
+    private static class AsciiSequence implements CharSequence {
+        private final ByteBuffer bytes;
+        private final int offset;
+        private final int length;
+
+        private AsciiSequence(ByteBuffer bytes, int offset, int length) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return (char)bytes.get(offset + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > length || start > end) {
+                throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+            }
+            return new AsciiSequence(bytes, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            byte[] chars = new byte[length];
+            bytes.get(offset, chars);
+            return new String(chars, StandardCharsets.US_ASCII);
+        }
+    }
+}
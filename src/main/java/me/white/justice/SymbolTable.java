@@ -0,0 +1,44 @@
+package me.white.justice;
+
+import me.white.justice.value.ItemValue;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+// interns action, argument and variable names of a compilation, so repeated names share one instance
+// safe to share between parallel jobs, names are added without locking the whole table
+// equal items are shared the same way, keyed by their snbt text or base64, which never collide
+public class SymbolTable {
+    private final ConcurrentHashMap<String, String> names = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ItemValue> items = new ConcurrentHashMap<>();
+
+    public SymbolTable() { }
+
+    public String intern(String name) {
+        if (name == null) {
+            return null;
+        }
+        // most names are already known, which a plain get finds without locking a bin
+        String known = names.get(name);
+        if (known != null) {
+            return known;
+        }
+        known = names.putIfAbsent(name, name);
+        return known == null ? name : known;
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    @Nullable
+    public ItemValue getItem(String key) {
+        return items.get(key);
+    }
+
+    // returns the item already known under the key, if another job got there first
+    public ItemValue internItem(String key, ItemValue item) {
+        ItemValue known = items.putIfAbsent(key, item);
+        return known == null ? item : known;
+    }
+}
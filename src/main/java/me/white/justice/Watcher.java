@@ -0,0 +1,131 @@
+package me.white.justice;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+// rebuilds the module whenever a source file changes, only reparsing the files that did
+// changes coming in within the debounce window are collected into a single rebuild
+public class Watcher {
+    private static final long DEBOUNCE_MILLIS = 100;
+    private final Path[] paths;
+    // watch events name absolute files, messages keep naming them as they were given
+    private final Path[] watched;
+    @Nullable
+    private final File out;
+    private final boolean isCompact;
+    private final boolean isAtomic;
+    @Nullable
+    private final ModuleCache cache;
+    // handlers of every file as of its last successful parse
+    private final Map<Path, List<Handler>> modules = new HashMap<>();
+    private final Set<Path> failed = new HashSet<>();
+
+    public Watcher(Path[] paths, @Nullable File out, boolean isCompact, boolean isAtomic, @Nullable ModuleCache cache) {
+        this.paths = paths;
+        this.watched = new Path[paths.length];
+        for (int i = 0; i < paths.length; ++i) {
+            watched[i] = paths[i].toAbsolutePath().normalize();
+        }
+        this.out = out;
+        this.isCompact = isCompact;
+        this.isAtomic = isAtomic;
+        this.cache = cache;
+    }
+
+    public void run() throws IOException, InterruptedException {
+        try (WatchService service = FileSystems.getDefault().newWatchService()) {
+            Map<WatchKey, Path> directories = new HashMap<>();
+            for (Path path : watched) {
+                Path directory = path.getParent();
+                if (!directories.containsValue(directory)) {
+                    directories.put(directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE), directory);
+                }
+            }
+            rebuild(new HashSet<>(Arrays.asList(watched)));
+            while (true) {
+                Set<Path> changed = new HashSet<>();
+                WatchKey key = service.take();
+                do {
+                    collect(key, directories.get(key), changed);
+                    key = service.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+                } while (key != null);
+                if (!changed.isEmpty()) {
+                    rebuild(changed);
+                }
+            }
+        }
+    }
+
+    private void collect(WatchKey key, Path directory, Set<Path> changed) {
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // events were lost, so every file of the directory could have changed
+                for (Path path : watched) {
+                    if (path.getParent().equals(directory)) {
+                        changed.add(path);
+                    }
+                }
+                continue;
+            }
+            Path path = directory.resolve((Path)event.context());
+            if (Arrays.asList(watched).contains(path)) {
+                changed.add(path);
+            }
+        }
+        key.reset();
+    }
+
+    private void rebuild(Set<Path> changed) {
+        long start = System.nanoTime();
+        // a fresh table per rebuild, so names and items of removed code are not kept for the whole session
+        SymbolTable symbols = new SymbolTable();
+        for (int i = 0; i < paths.length; ++i) {
+            Path path = watched[i];
+            if (!changed.contains(path)) {
+                continue;
+            }
+            modules.remove(path);
+            failed.remove(path);
+            try {
+                modules.put(path, JustIce.parseFile(path, SourceFile.read(path), cache, symbols, null));
+            } catch (NoSuchFileException e) {
+                System.err.println("File '" + paths[i] + "' does not exist");
+                failed.add(path);
+            } catch (IOException e) {
+                System.err.println("Could not read file '" + paths[i] + "': " + e.getMessage());
+                failed.add(path);
+            } catch (ParsingException e) {
+                JustIce.printErrors(paths, paths[i], e);
+                failed.add(path);
+            }
+        }
+        if (!failed.isEmpty()) {
+            System.out.println("Waiting for changes");
+            return;
+        }
+        Parser parser = new Parser(symbols);
+        parser.setCompact(isCompact);
+        for (Path path : watched) {
+            parser.addHandlers(modules.get(path));
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (out == null) {
+            System.out.println("Checked " + changed.size() + " of " + paths.length + " files in " + elapsed + "ms");
+            return;
+        }
+        try (OutputFile output = OutputFile.open(out, isAtomic)) {
+            parser.write(output.getChannel());
+            output.commit();
+        } catch (IOException e) {
+            System.err.println("Could not write file '" + out + "': " + e.getMessage());
+            return;
+        }
+        elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        System.out.println("Rebuilt '" + out + "' from " + changed.size() + " of " + paths.length + " files in " + elapsed + "ms");
+    }
+}
@@ -1,55 +1,190 @@
 package me.white.justice.lexer;
 
 import me.white.justice.ParsingException;
+import net.querz.nbt.tag.CompoundTag;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.io.Reader;
 
 public class Lexer {
-    private static final Map<Character, TokenType> SIMPLE_TOKENS = new HashMap<>();
-    private final String buffer;
-    private Token pending;
-    private Token eof = null;
+    private static final int CHUNK_SIZE = 8192;
+    // the token stream doubles as needed, so large sources don't reserve memory up front
+    private static final int INITIAL_TOKENS = 64;
+    private static final byte WHITESPACE = 1;
+    private static final byte LITERAL_START = 2;
+    private static final byte LITERAL = 4;
+    private static final byte NUMBER_START = 8;
+    // character classes of ascii, anything above is none of them
+    private static final byte[] CLASSES = new byte[128];
+    private final CharSequence buffer;
+    private final TokenStream tokens;
+    // index of the next token to read, tokens past it were only peeked
+    private int cursor = 0;
     private int pos = 0;
     private int row = 1;
     private int column = 1;
+    // only built once something needs to locate an offset
+    @Nullable
+    private LineIndex lines = null;
 
     static {
-        SIMPLE_TOKENS.put('{', TokenType.BLOCK_OPEN);
-        SIMPLE_TOKENS.put('}', TokenType.BLOCK_CLOSE);
-        SIMPLE_TOKENS.put('(', TokenType.ARGS_OPEN);
-        SIMPLE_TOKENS.put(')', TokenType.ARGS_CLOSE);
-        SIMPLE_TOKENS.put('<', TokenType.SELECTOR_OPEN);
-        SIMPLE_TOKENS.put('>', TokenType.SELECTOR_CLOSE);
-        SIMPLE_TOKENS.put(',', TokenType.COMMA);
-        SIMPLE_TOKENS.put('=', TokenType.EQUALS);
-        SIMPLE_TOKENS.put(';', TokenType.EOL);
+        for (char ch : " \t\n\r".toCharArray()) {
+            CLASSES[ch] |= WHITESPACE;
+        }
+        for (char ch = 'a'; ch <= 'z'; ++ch) {
+            CLASSES[ch] |= LITERAL_START | LITERAL;
+            CLASSES[Character.toUpperCase(ch)] |= LITERAL_START | LITERAL;
+        }
+        CLASSES['_'] |= LITERAL_START | LITERAL;
+        for (char ch = '0'; ch <= '9'; ++ch) {
+            CLASSES[ch] |= LITERAL | NUMBER_START;
+        }
+        for (char ch : "-+.".toCharArray()) {
+            CLASSES[ch] |= NUMBER_START;
+        }
+    }
+
+    public Lexer(CharSequence buffer) {
+        this.buffer = normalize(buffer);
+        this.tokens = new TokenStream(this.buffer, INITIAL_TOKENS);
+    }
+
+    // the lexer seeks back and reads item data in place, so the reader is drained into one buffer first
+    // that buffer is the only copy of the source, line breaks are normalized while it is filled
+    public Lexer(Reader reader) throws IOException {
+        this.buffer = read(reader);
+        this.tokens = new TokenStream(this.buffer, INITIAL_TOKENS);
     }
 
-    public Lexer(String buffer) {
-        this.buffer = buffer.replace("\r\n", "\n");
+    // lexes part of an already normalized buffer from an offset
+    public Lexer(CharSequence buffer, int pos) {
+        this.buffer = buffer;
+        this.tokens = new TokenStream(buffer, INITIAL_TOKENS);
+        seek(pos);
+    }
+
+    // the row and column of the offset are already known, so no line index is built unless an error is reported
+    public Lexer(CharSequence buffer, int pos, int row, int column) {
+        this.buffer = buffer;
+        this.tokens = new TokenStream(buffer, INITIAL_TOKENS);
+        this.pos = pos;
+        this.row = row;
+        this.column = column;
+        skipWhitespace();
+    }
+
+    // only copies the source if it actually contains carriage returns
+    public static CharSequence normalize(CharSequence buffer) {
+        int length = buffer.length();
+        int i = 0;
+        if (buffer instanceof String string) {
+            i = string.indexOf('\r');
+            if (i == -1) {
+                return buffer;
+            }
+        }
+        while (i < length && buffer.charAt(i) != '\r') {
+            i += 1;
+        }
+        if (i == length) {
+            return buffer;
+        }
+        StringBuilder builder = new StringBuilder(length);
+        builder.append(buffer, 0, i);
+        for (; i < length; ++i) {
+            char ch = buffer.charAt(i);
+            if (ch != '\r' || i + 1 == length || buffer.charAt(i + 1) != '\n') {
+                builder.append(ch);
+            }
+        }
+        return builder;
+    }
+
+    private static CharSequence read(Reader reader) throws IOException {
+        StringBuilder builder = new StringBuilder(CHUNK_SIZE);
+        char[] chunk = new char[CHUNK_SIZE];
+        boolean isReturnPending = false;
+        int read;
+        while ((read = reader.read(chunk)) != -1) {
+            int start = 0;
+            if (isReturnPending && read > 0) {
+                if (chunk[0] != '\n') {
+                    builder.append('\r');
+                }
+                isReturnPending = false;
+            }
+            for (int i = 0; i < read; ++i) {
+                if (chunk[i] != '\r') {
+                    continue;
+                }
+                builder.append(chunk, start, i - start);
+                start = i + 1;
+                if (i + 1 == read) {
+                    // the matching '\n' may arrive with the next chunk
+                    isReturnPending = true;
+                } else if (chunk[i + 1] != '\n') {
+                    builder.append('\r');
+                }
+            }
+            builder.append(chunk, start, read - start);
+        }
+        if (isReturnPending) {
+            builder.append('\r');
+        }
+        return builder;
+    }
+
+    private static boolean is(char ch, byte type) {
+        return ch < CLASSES.length && (CLASSES[ch] & type) != 0;
     }
 
     public static boolean isLiteralStart(char ch) {
-        return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || ch == '_';
+        return is(ch, LITERAL_START);
     }
 
     public static boolean isLiteral(char ch) {
-        return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9') || ch == '_';
+        return is(ch, LITERAL);
     }
 
     public static boolean isNumberStart(char ch) {
-        return (ch >= '0' && ch <= '9') || ch == '-' || ch == '+' || ch == '.';
+        return is(ch, NUMBER_START);
     }
 
     public static boolean isWhitespace(char ch) {
-        return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\r';
+        return is(ch, WHITESPACE);
     }
 
-    public String getBuffer() {
+    // resolves escapes of an already validated string, identifier or enum body
+    static String unescape(CharSequence buffer, int start, int end) {
+        StringBuilder builder = null;
+        for (int i = start; i < end; ++i) {
+            char ch = buffer.charAt(i);
+            if (ch == '\\') {
+                if (builder == null) {
+                    builder = new StringBuilder(end - start).append(buffer, start, i);
+                }
+                i += 1;
+                ch = buffer.charAt(i);
+                if (ch == '\n') {
+                    continue;
+                }
+            }
+            if (builder != null) {
+                builder.append(ch);
+            }
+        }
+        return builder == null ? buffer.subSequence(start, end).toString() : builder.toString();
+    }
+
+    public CharSequence getBuffer() {
         return buffer;
     }
 
+    public TokenStream getTokens() {
+        return tokens;
+    }
+
     public int getPos() {
         return pos;
     }
@@ -62,47 +197,59 @@ public class Lexer {
         return column;
     }
 
+    private boolean hasPending() {
+        return cursor < tokens.size();
+    }
+
     public int getReadPos() {
-        if (pending != null) {
-            return pending.getPos();
+        if (hasPending()) {
+            return tokens.getPos(cursor);
         }
         return pos;
     }
 
     public int getReadRow() {
-        if (pending != null) {
-            return pending.getRow();
+        if (hasPending()) {
+            return tokens.getRow(cursor);
         }
-        return pos;
+        return row;
     }
 
     public int getReadColumn() {
-        if (pending != null) {
-            return pending.getColumn();
+        if (hasPending()) {
+            return tokens.getColumn(cursor);
         }
         return column;
     }
 
     public void revert() {
-        if (pending != null) {
-            pos = pending.getPos();
-            row = pending.getRow();
-            column = pending.getColumn();
-            pending = null;
+        if (hasPending()) {
+            pos = tokens.getPos(cursor);
+            row = tokens.getRow(cursor);
+            column = tokens.getColumn(cursor);
+            tokens.truncate(cursor);
         }
     }
 
+    // continues lexing from another offset, tokens lexed past the cursor are dropped
+    public void seek(int pos) {
+        tokens.truncate(cursor);
+        this.pos = pos;
+        row = getRowAt(pos);
+        column = getColumnAt(pos);
+        skipWhitespace();
+    }
+
     public void advance(int advance) {
-        String advanced = buffer.substring(pos, pos + advance);
-        String stripped = advanced.replace("\n", "");
-        int rows = advanced.length() - stripped.length();
-        if (rows != 0) {
-            row += rows;
-            column = advanced.length() - advanced.lastIndexOf('\n');
-        } else {
-            column += advance;
+        int end = pos + advance;
+        for (; pos < end; ++pos) {
+            if (buffer.charAt(pos) == '\n') {
+                row += 1;
+                column = 1;
+            } else {
+                column += 1;
+            }
         }
-        pos += advance;
     }
 
     public void advanceFrom(int start) {
@@ -116,27 +263,37 @@ public class Lexer {
     }
 
     public boolean hasNext() {
-        if (pending != null) {
+        if (hasPending()) {
             return true;
         }
         return canRead();
     }
 
     private void skipWhitespace() {
-        if (!canRead()) {
-            return;
-        }
-        int start = pos;
-        while (canRead() && isWhitespace(buffer.charAt(pos))) {
+        while (canRead()) {
+            char ch = buffer.charAt(pos);
+            if (ch == '\n') {
+                row += 1;
+                column = 1;
+            } else if (isWhitespace(ch)) {
+                column += 1;
+            } else {
+                return;
+            }
             pos += 1;
         }
-        advanceFrom(start);
     }
 
-    private String readEnclosed(char close, String name) throws ParsingException {
+    // none of the single character tokens is a line break
+    private TokenType skipSimple(TokenType type) {
+        pos += 1;
+        column += 1;
+        return type;
+    }
+
+    private TokenType skipEnclosed(TokenType type, char close) throws ParsingException {
         int start = pos;
         pos += 1;
-        StringBuilder builder = new StringBuilder();
         while (canRead() && buffer.charAt(pos) != close) {
             char ch = buffer.charAt(pos);
             if (ch == '\n') {
@@ -156,25 +313,24 @@ public class Lexer {
                     throw error("Invalid escape sequence");
                 }
             }
-            builder.append(ch);
             pos += 1;
         }
         if (!canRead() || buffer.charAt(pos) != close) {
-            throw error("Incomplete " + name);
+            throw error("Incomplete " + type.getRepresentation());
         }
         pos += 1;
         advanceFrom(start);
-        return builder.toString();
+        return type;
     }
 
-    private String readLiteral() {
+    private TokenType skipLiteral() {
         int start = pos;
         while (canRead() && isLiteral(buffer.charAt(pos))) {
             pos += 1;
         }
-        String literal = buffer.substring(start, pos);
-        advanceFrom(start);
-        return literal;
+        // literals never span lines
+        column += pos - start;
+        return TokenType.LITERAL;
     }
 
     private double readNumber() throws ParsingException {
@@ -211,17 +367,15 @@ public class Lexer {
             pos += 1;
         }
         try {
-            double number = Double.parseDouble(buffer.substring(start, pos));
-            int advance = pos - start;
-            pos = start;
-            advance(advance);
+            double number = Double.parseDouble(buffer.subSequence(start, pos).toString());
+            column += pos - start;
             return number;
         } catch (NumberFormatException e) {
             throw error("Invalid number: " + e.getMessage());
         }
     }
 
-    private String readPlaceholder() throws ParsingException {
+    private TokenType skipPlaceholder() throws ParsingException {
         int start = pos;
         int depth = 0;
         pos += 1;
@@ -245,9 +399,8 @@ public class Lexer {
             throw error("Incomplete placeholder");
         }
         pos += 1;
-        String placeholder = buffer.substring(start, pos);
         advanceFrom(start);
-        return placeholder;
+        return TokenType.PLACEHOLDER;
     }
 
     private int readColor() throws ParsingException {
@@ -275,87 +428,201 @@ public class Lexer {
         return color;
     }
 
-    private Token next() throws ParsingException {
+    private int lex() throws ParsingException {
         skipWhitespace();
         if (!canRead()) {
-            if (eof == null) {
-                eof = new Token(TokenType.EOF, null, pos, row, column, 1);
-            }
-            System.out.println("eof");
-            return eof;
+            return tokens.add(TokenType.EOF, pos, 1, row, column, 0);
         }
         int pos = this.pos;
         int row = this.row;
         int column = this.column;
         char ch = buffer.charAt(pos);
-        Token token;
-        if (SIMPLE_TOKENS.containsKey(ch)) {
-            advance(1);
-            token = new Token(SIMPLE_TOKENS.get(ch), null, pos, row, column, 1);
-        } else if (isNumberStart(ch)) {
-            token = new Token(TokenType.NUMBER, readNumber(), pos, row, column, this.pos - pos);
-        } else if (isLiteralStart(ch)) {
-            token = new Token(TokenType.LITERAL, readLiteral(), pos, row, column, this.pos - pos);
-        } else {
-            token = switch (ch) {
-                case '"' -> new Token(TokenType.STRING, readEnclosed('"', "string"), pos, row, column, this.pos - pos);
-                case '`' -> new Token(TokenType.IDENTIFIER, readEnclosed('`', "identifier"), pos, row, column, this.pos - pos);
-                case '\'' -> new Token(TokenType.ENUM, readEnclosed('\'', "enum"), pos, row, column, this.pos - pos);
-                case '%' -> new Token(TokenType.PLACEHOLDER, readPlaceholder(), pos, row, column, this.pos - pos);
-                case '#' -> new Token(TokenType.COLOR, readColor(), pos, row, column, this.pos - pos);
-                default -> throw error("Invalid token");
-            };
-        }
+        double number = 0;
+        TokenType type = switch (ch) {
+            case '{' -> skipSimple(TokenType.BLOCK_OPEN);
+            case '}' -> skipSimple(TokenType.BLOCK_CLOSE);
+            case '(' -> skipSimple(TokenType.ARGS_OPEN);
+            case ')' -> skipSimple(TokenType.ARGS_CLOSE);
+            case '<' -> skipSimple(TokenType.SELECTOR_OPEN);
+            case '>' -> skipSimple(TokenType.SELECTOR_CLOSE);
+            case ',' -> skipSimple(TokenType.COMMA);
+            case '=' -> skipSimple(TokenType.EQUALS);
+            case ';' -> skipSimple(TokenType.EOL);
+            case '"' -> skipEnclosed(TokenType.STRING, '"');
+            case '`' -> skipEnclosed(TokenType.IDENTIFIER, '`');
+            case '\'' -> skipEnclosed(TokenType.ENUM, '\'');
+            case '%' -> skipPlaceholder();
+            case '#' -> {
+                number = readColor();
+                yield TokenType.COLOR;
+            }
+            default -> {
+                if (isNumberStart(ch)) {
+                    number = readNumber();
+                    yield TokenType.NUMBER;
+                }
+                if (isLiteralStart(ch)) {
+                    yield skipLiteral();
+                }
+                throw error("Invalid token");
+            }
+        };
+        int token = tokens.add(type, pos, this.pos - pos, row, column, number);
         skipWhitespace();
         return token;
     }
 
-    public Token peek() throws ParsingException {
-        if (pending == null) {
-            pending = next();
+    public int peekToken() throws ParsingException {
+        if (!hasPending()) {
+            return lex();
         }
-        return pending;
+        return cursor;
     }
 
-    public Token read() throws ParsingException {
-        if (pending == null) {
-            return next();
-        }
-        Token token = pending;
-        pending = null;
+    public int readToken() throws ParsingException {
+        int token = peekToken();
+        cursor = token + 1;
         return token;
     }
 
-    public Token expect(TokenType type) throws ParsingException {
-        Token token = read();
-        if (!token.isOf(type)) {
+    // steps back to an already lexed token, so it is read again
+    public void unread(int token) {
+        cursor = token;
+    }
+
+    // unexpected tokens are left unread, so the parser can recover from them
+    public int expectToken(TokenType type) throws ParsingException {
+        int token = readToken();
+        if (!tokens.isOf(token, type)) {
+            unread(token);
             throw error(token, "Expected " + type.getRepresentation());
         }
         return token;
     }
 
-    public Token expectIdentifier() throws ParsingException {
-        Token token = read();
-        if (!token.getType().isIdentifier()) {
+    public int expectIdentifierToken() throws ParsingException {
+        int token = readToken();
+        if (!tokens.getType(token).isIdentifier()) {
+            unread(token);
             throw error(token, "Expected identifier-like");
         }
         return token;
     }
 
+    // peeks the next token that lexes, skipping characters of broken tokens one at a time
+    public int peekValidToken() {
+        if (!hasPending()) {
+            row = getRowAt(pos);
+            column = getColumnAt(pos);
+        }
+        while (true) {
+            try {
+                return peekToken();
+            } catch (ParsingException e) {
+                // a broken token stops anywhere inside itself, so the position is located from scratch
+                pos = Math.min(pos + 1, buffer.length());
+                row = getRowAt(pos);
+                column = getColumnAt(pos);
+            }
+        }
+    }
+
+    public int readValidToken() {
+        int token = peekValidToken();
+        cursor = token + 1;
+        return token;
+    }
+
+    // lexes the rest of the source at once, without the parser item data cannot be told apart from blocks
+    public TokenStream tokenize() throws ParsingException {
+        while (hasNext()) {
+            readToken();
+        }
+        return tokens;
+    }
+
+    public Token peek() throws ParsingException {
+        return tokens.get(peekToken());
+    }
+
+    public Token read() throws ParsingException {
+        return tokens.get(readToken());
+    }
+
+    public CompoundTag readCompound() throws ParsingException {
+        revert();
+        int pos = this.pos;
+        int row = this.row;
+        int column = this.column;
+        try {
+            return new SNBTReader(this).readCompound();
+        } catch (ParsingException e) {
+            // recovery skips item data as a whole, starting from its opening brace
+            this.pos = pos;
+            this.row = row;
+            this.column = column;
+            throw e;
+        }
+    }
+
+    // the text of the item data ahead, found by matching brackets without reading it as snbt
+    @Nullable
+    public String peekCompound() {
+        revert();
+        return new SNBTReader(this).peekCompound();
+    }
+
+    // moves past item data whose text was peeked and is known to be valid
+    public void skipCompound(String compound) {
+        revert();
+        int start = pos;
+        while (start < buffer.length() && Character.isWhitespace(buffer.charAt(start))) {
+            start += 1;
+        }
+        advance(start + compound.length() - pos);
+    }
+
+    public Token expect(TokenType type) throws ParsingException {
+        return tokens.get(expectToken(type));
+    }
+
+    public Token expectIdentifier() throws ParsingException {
+        return tokens.get(expectIdentifierToken());
+    }
+
+    public LineIndex getLines() {
+        if (lines == null) {
+            lines = new LineIndex(buffer);
+        }
+        return lines;
+    }
+
+    public int getRowAt(int pos) {
+        return getLines().lineOf(pos) + 1;
+    }
+
+    public int getColumnAt(int pos) {
+        LineIndex lines = getLines();
+        return pos - lines.getStart(lines.lineOf(pos)) + 1;
+    }
+
     public ParsingException error(Token token, String message) {
         return error(token.getPos(), token.getRow(), token.getColumn(), token.getLength(), message);
     }
 
+    public ParsingException error(int token, String message) {
+        return error(tokens.getPos(token), tokens.getRow(token), tokens.getColumn(token), tokens.getLength(token), message);
+    }
+
     public ParsingException error(String message) {
         return error(pos, row, column, 1, message);
     }
 
     private ParsingException error(int pos, int row, int column, int length, String message) {
-        int lineStart = buffer.substring(0, pos).lastIndexOf('\n') + 1;
-        int lineEnd = buffer.indexOf('\n', pos);
-        if (lineEnd == -1) {
-            lineEnd = buffer.length();
-        }
+        LineIndex lines = getLines();
+        int line = lines.lineOf(pos);
+        int lineStart = lines.getStart(line);
+        int lineEnd = lines.getEnd(line);
         int noticeStart = Math.max(lineStart, pos - 30);
         int noticeEnd = Math.min(lineEnd, pos + 30);
         int pointerLength = Math.min(lineEnd - pos, length);
@@ -364,13 +631,13 @@ public class Lexer {
         }
         String position = "(" + row + ":" + column + ") ";
         String builder = position
-                + buffer.substring(noticeStart, noticeEnd)
+                + buffer.subSequence(noticeStart, noticeEnd)
                 + "\n"
                 + " ".repeat(position.length() + pos - noticeStart)
                 + "^".repeat(pointerLength)
                 + " ".repeat(Math.max(0, noticeEnd - noticeStart - length))
                 + "\n"
                 + message;
-        return new ParsingException(builder);
+        return new ParsingException(builder, pos, pointerLength, message);
     }
 }
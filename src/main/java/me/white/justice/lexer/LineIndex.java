@@ -0,0 +1,52 @@
+package me.white.justice.lexer;
+
+import java.util.Arrays;
+
+// offsets where every line of a source starts, lines count from zero
+public class LineIndex {
+    private final int length;
+    private int[] starts = new int[64];
+    private int count = 1;
+
+    LineIndex(CharSequence buffer) {
+        length = buffer.length();
+        // strings search for line breaks much faster on their own
+        if (buffer instanceof String string) {
+            for (int i = string.indexOf('\n'); i != -1; i = string.indexOf('\n', i + 1)) {
+                add(i + 1);
+            }
+            return;
+        }
+        for (int i = 0; i < length; ++i) {
+            if (buffer.charAt(i) == '\n') {
+                add(i + 1);
+            }
+        }
+    }
+
+    private void add(int start) {
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+        }
+        starts[count] = start;
+        count += 1;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int lineOf(int pos) {
+        int line = Arrays.binarySearch(starts, 0, count, pos);
+        return line >= 0 ? line : -line - 2;
+    }
+
+    public int getStart(int line) {
+        return starts[line];
+    }
+
+    // the offset of the line break, or of the end of the source on the last line
+    public int getEnd(int line) {
+        return line + 1 < count ? starts[line + 1] - 1 : length;
+    }
+}
@@ -0,0 +1,396 @@
+package me.white.justice.lexer;
+
+import me.white.justice.ParsingException;
+import net.querz.nbt.tag.*;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// reads snbt in place from the lexer buffer, following the lenient net.querz.nbt grammar
+class SNBTReader {
+    private final Lexer lexer;
+    private final CharSequence buffer;
+    private int pos;
+
+    SNBTReader(Lexer lexer) {
+        this.lexer = lexer;
+        this.buffer = lexer.getBuffer();
+        this.pos = lexer.getPos();
+    }
+
+    private static boolean isSimple(char ch) {
+        return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9') || ch == '-' || ch == '+' || ch == '.' || ch == '_';
+    }
+
+    private static boolean isDigit(char ch) {
+        return ch >= '0' && ch <= '9';
+    }
+
+    // [-+]?\d+
+    private static boolean isInteger(String string, int end) {
+        int i = 0;
+        if (i < end && (string.charAt(i) == '-' || string.charAt(i) == '+')) {
+            i += 1;
+        }
+        if (i == end) {
+            return false;
+        }
+        for (; i < end; ++i) {
+            if (!isDigit(string.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // [-+]?(\d+\.?|\d*\.\d+)(e[-+]?\d+)?
+    private static boolean isDecimal(String string, int end, boolean requireDot) {
+        int i = 0;
+        if (i < end && (string.charAt(i) == '-' || string.charAt(i) == '+')) {
+            i += 1;
+        }
+        int digits = 0;
+        while (i < end && isDigit(string.charAt(i))) {
+            i += 1;
+            digits += 1;
+        }
+        boolean hasDot = i < end && string.charAt(i) == '.';
+        if (hasDot) {
+            i += 1;
+            while (i < end && isDigit(string.charAt(i))) {
+                i += 1;
+                digits += 1;
+            }
+        }
+        if (digits == 0 || (requireDot && !hasDot)) {
+            return false;
+        }
+        if (i < end && (string.charAt(i) == 'e' || string.charAt(i) == 'E')) {
+            i += 1;
+            if (i < end && (string.charAt(i) == '-' || string.charAt(i) == '+')) {
+                i += 1;
+            }
+            if (i == end) {
+                return false;
+            }
+            while (i < end && isDigit(string.charAt(i))) {
+                i += 1;
+            }
+        }
+        return i == end;
+    }
+
+    public CompoundTag readCompound() throws ParsingException {
+        skipWhitespace();
+        int start = pos;
+        if (!canRead() || buffer.charAt(pos) != '{') {
+            throw error("Expected item data");
+        }
+        Tag<?> tag = readTag(Tag.DEFAULT_MAX_DEPTH);
+        if (!(tag instanceof CompoundTag)) {
+            pos = start;
+            throw error("Invalid item data");
+        }
+        lexer.advance(pos - lexer.getPos());
+        return (CompoundTag)tag;
+    }
+
+    // finds the end of the compound ahead from brackets and quotes alone, without moving the lexer
+    @Nullable
+    String peekCompound() {
+        skipWhitespace();
+        int start = pos;
+        if (!canRead() || buffer.charAt(pos) != '{') {
+            return null;
+        }
+        int depth = 0;
+        while (canRead()) {
+            char ch = buffer.charAt(pos);
+            pos += 1;
+            if (ch == '"' || ch == '\'') {
+                while (canRead() && buffer.charAt(pos) != ch) {
+                    pos += buffer.charAt(pos) == '\\' ? 2 : 1;
+                }
+                pos += 1;
+            } else if (ch == '{' || ch == '[') {
+                depth += 1;
+            } else if (ch == '}' || ch == ']') {
+                depth -= 1;
+                if (depth == 0) {
+                    return buffer.subSequence(start, pos).toString();
+                }
+            }
+        }
+        return null;
+    }
+
+    private ParsingException error(String message) {
+        lexer.advance(pos - lexer.getPos());
+        return lexer.error(message);
+    }
+
+    private boolean canRead() {
+        return pos < buffer.length();
+    }
+
+    private void skipWhitespace() {
+        while (canRead() && Character.isWhitespace(buffer.charAt(pos))) {
+            pos += 1;
+        }
+    }
+
+    private void expect(char expected) throws ParsingException {
+        skipWhitespace();
+        if (!canRead()) {
+            throw error("Incomplete item data");
+        }
+        if (buffer.charAt(pos) != expected) {
+            throw error("Expected '" + expected + "'");
+        }
+        pos += 1;
+    }
+
+    private boolean nextElement() {
+        skipWhitespace();
+        if (canRead() && buffer.charAt(pos) == ',') {
+            pos += 1;
+            skipWhitespace();
+            return true;
+        }
+        return false;
+    }
+
+    private Tag<?> readTag(int depth) throws ParsingException {
+        if (depth < 0) {
+            throw error("Item data is nested too deep");
+        }
+        skipWhitespace();
+        if (!canRead()) {
+            throw error("Incomplete item data");
+        }
+        char ch = buffer.charAt(pos);
+        if (ch == '{') {
+            return readCompoundTag(depth);
+        }
+        if (ch == '[') {
+            if (pos + 2 < buffer.length() && buffer.charAt(pos + 1) != '"' && buffer.charAt(pos + 2) == ';') {
+                return readArrayTag();
+            }
+            return readListTag(depth);
+        }
+        if (ch == '"' || ch == '\'') {
+            return new StringTag(readQuoted());
+        }
+        return readLiteral();
+    }
+
+    private CompoundTag readCompoundTag(int depth) throws ParsingException {
+        expect('{');
+        CompoundTag compound = new CompoundTag();
+        skipWhitespace();
+        while (canRead() && buffer.charAt(pos) != '}') {
+            String key;
+            char ch = buffer.charAt(pos);
+            if (ch == '"' || ch == '\'') {
+                key = readQuoted();
+            } else {
+                key = readSimple();
+            }
+            if (key.isEmpty()) {
+                throw error("Expected item data key");
+            }
+            expect(':');
+            compound.put(key, readTag(depth - 1));
+            if (!nextElement()) {
+                break;
+            }
+        }
+        expect('}');
+        return compound;
+    }
+
+    private ListTag<?> readListTag(int depth) throws ParsingException {
+        expect('[');
+        skipWhitespace();
+        ListTag<?> list = ListTag.createUnchecked(EndTag.class);
+        while (canRead() && buffer.charAt(pos) != ']') {
+            int start = pos;
+            Tag<?> element = readTag(depth - 1);
+            try {
+                list.addUnchecked(element);
+            } catch (IllegalArgumentException e) {
+                pos = start;
+                throw error("Mixed item data list");
+            }
+            if (!nextElement()) {
+                break;
+            }
+        }
+        expect(']');
+        return list;
+    }
+
+    private ArrayTag<?> readArrayTag() throws ParsingException {
+        expect('[');
+        char type = buffer.charAt(pos);
+        pos += 1;
+        expect(';');
+        skipWhitespace();
+        List<String> elements = new ArrayList<>();
+        List<Integer> starts = new ArrayList<>();
+        while (canRead() && buffer.charAt(pos) != ']') {
+            starts.add(pos);
+            elements.add(readSimple());
+            if (!nextElement()) {
+                break;
+            }
+        }
+        int end = pos;
+        expect(']');
+        try {
+            switch (type) {
+                case 'B' -> {
+                    byte[] array = new byte[elements.size()];
+                    for (int i = 0; i < array.length; ++i) {
+                        pos = starts.get(i);
+                        array[i] = Byte.parseByte(arrayElement(elements.get(i), 'b'));
+                    }
+                    pos = end + 1;
+                    return new ByteArrayTag(array);
+                }
+                case 'I' -> {
+                    int[] array = new int[elements.size()];
+                    for (int i = 0; i < array.length; ++i) {
+                        pos = starts.get(i);
+                        array[i] = Integer.parseInt(arrayElement(elements.get(i), '\0'));
+                    }
+                    pos = end + 1;
+                    return new IntArrayTag(array);
+                }
+                case 'L' -> {
+                    long[] array = new long[elements.size()];
+                    for (int i = 0; i < array.length; ++i) {
+                        pos = starts.get(i);
+                        array[i] = Long.parseLong(arrayElement(elements.get(i), 'l'));
+                    }
+                    pos = end + 1;
+                    return new LongArrayTag(array);
+                }
+                default -> {
+                    pos = end;
+                    throw error("Invalid item data array type");
+                }
+            }
+        } catch (NumberFormatException e) {
+            throw error("Invalid item data array element");
+        }
+    }
+
+    private static String arrayElement(String element, char suffix) {
+        int end = element.length();
+        if (suffix != '\0' && end > 0 && Character.toLowerCase(element.charAt(end - 1)) == suffix) {
+            end -= 1;
+        }
+        if (!isInteger(element, end)) {
+            throw new NumberFormatException();
+        }
+        return element.substring(0, end);
+    }
+
+    private String readSimple() {
+        int start = pos;
+        while (canRead() && isSimple(buffer.charAt(pos))) {
+            pos += 1;
+        }
+        return buffer.subSequence(start, pos).toString();
+    }
+
+    private String readQuoted() throws ParsingException {
+        char close = buffer.charAt(pos);
+        pos += 1;
+        int start = pos;
+        StringBuilder builder = null;
+        while (canRead()) {
+            char ch = buffer.charAt(pos);
+            if (ch == close) {
+                String string = builder == null ? buffer.subSequence(start, pos).toString() : builder.toString();
+                pos += 1;
+                return string;
+            }
+            if (ch == '\\') {
+                if (builder == null) {
+                    builder = new StringBuilder().append(buffer, start, pos);
+                }
+                pos += 1;
+                if (!canRead()) {
+                    break;
+                }
+                ch = buffer.charAt(pos);
+                if (ch != close && ch != '\\') {
+                    throw error("Invalid escape sequence");
+                }
+            }
+            if (builder != null) {
+                builder.append(ch);
+            }
+            pos += 1;
+        }
+        throw error("Incomplete item data string");
+    }
+
+    private Tag<?> readLiteral() throws ParsingException {
+        int start = pos;
+        String literal = readSimple();
+        if (literal.isEmpty()) {
+            throw error("Expected item data value");
+        }
+        int length = literal.length();
+        char suffix = Character.toLowerCase(literal.charAt(length - 1));
+        try {
+            switch (suffix) {
+                case 'f' -> {
+                    if (isDecimal(literal, length - 1, false)) {
+                        return new FloatTag(Float.parseFloat(literal.substring(0, length - 1)));
+                    }
+                }
+                case 'b' -> {
+                    if (isInteger(literal, length - 1)) {
+                        return new ByteTag(Byte.parseByte(literal.substring(0, length - 1)));
+                    }
+                }
+                case 's' -> {
+                    if (isInteger(literal, length - 1)) {
+                        return new ShortTag(Short.parseShort(literal.substring(0, length - 1)));
+                    }
+                }
+                case 'l' -> {
+                    if (isInteger(literal, length - 1)) {
+                        return new LongTag(Long.parseLong(literal.substring(0, length - 1)));
+                    }
+                }
+                case 'd' -> {
+                    if (isDecimal(literal, length - 1, false)) {
+                        return new DoubleTag(Double.parseDouble(literal.substring(0, length - 1)));
+                    }
+                }
+            }
+            if (isInteger(literal, length)) {
+                return new IntTag(Integer.parseInt(literal));
+            }
+        } catch (NumberFormatException e) {
+            pos = start;
+            throw error("Item data number out of range");
+        }
+        if (isDecimal(literal, length, true)) {
+            return new DoubleTag(Double.parseDouble(literal));
+        }
+        if (literal.equalsIgnoreCase("true")) {
+            return new ByteTag(true);
+        }
+        if (literal.equalsIgnoreCase("false")) {
+            return new ByteTag(false);
+        }
+        return new StringTag(literal);
+    }
+}
@@ -0,0 +1,120 @@
+package me.white.justice.lexer;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+// tokens of a source kept in parallel arrays, strings are only sliced from the source when asked for
+public class TokenStream {
+    private static final TokenType[] TYPES = TokenType.values();
+    private final CharSequence buffer;
+    private byte[] types;
+    private int[] starts;
+    private int[] lengths;
+    private int[] rows;
+    private int[] columns;
+    private double[] numbers;
+    private int size = 0;
+
+    TokenStream(CharSequence buffer, int capacity) {
+        this.buffer = buffer;
+        types = new byte[capacity];
+        starts = new int[capacity];
+        lengths = new int[capacity];
+        rows = new int[capacity];
+        columns = new int[capacity];
+        numbers = new double[capacity];
+    }
+
+    int add(TokenType type, int start, int length, int row, int column, double number) {
+        if (size == types.length) {
+            int capacity = size * 2;
+            types = Arrays.copyOf(types, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            rows = Arrays.copyOf(rows, capacity);
+            columns = Arrays.copyOf(columns, capacity);
+            numbers = Arrays.copyOf(numbers, capacity);
+        }
+        types[size] = (byte)type.ordinal();
+        starts[size] = start;
+        lengths[size] = length;
+        rows[size] = row;
+        columns[size] = column;
+        numbers[size] = number;
+        return size++;
+    }
+
+    void truncate(int size) {
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public TokenType getType(int token) {
+        return TYPES[types[token]];
+    }
+
+    public boolean isOf(int token, TokenType type) {
+        return types[token] == type.ordinal();
+    }
+
+    @Nullable
+    public String getString(int token) {
+        TokenType type = getType(token);
+        if (!type.isString()) {
+            return null;
+        }
+        int start = starts[token];
+        int end = start + lengths[token];
+        return switch (type) {
+            case STRING, IDENTIFIER, ENUM -> Lexer.unescape(buffer, start + 1, end - 1);
+            default -> buffer.subSequence(start, end).toString();
+        };
+    }
+
+    public double getNumber(int token) {
+        if (!getType(token).isNumber()) {
+            return 0;
+        }
+        return numbers[token];
+    }
+
+    public int getInteger(int token) {
+        if (!getType(token).isInteger()) {
+            return 0;
+        }
+        return (int)numbers[token];
+    }
+
+    public int getPos(int token) {
+        return starts[token];
+    }
+
+    public int getLength(int token) {
+        return lengths[token];
+    }
+
+    public int getRow(int token) {
+        return rows[token];
+    }
+
+    public int getColumn(int token) {
+        return columns[token];
+    }
+
+    public Token get(int token) {
+        TokenType type = getType(token);
+        Object value;
+        if (type.isInteger()) {
+            value = getInteger(token);
+        } else if (type.isNumber()) {
+            value = getNumber(token);
+        } else {
+            value = getString(token);
+        }
+        return new Token(type, value, starts[token], rows[token], columns[token], lengths[token]);
+    }
+}
@@ -1,6 +1,7 @@
 package me.white.justice.value;
 
-import com.google.gson.stream.JsonWriter;
+import me.white.justice.BinaryWriter;
+import me.white.justice.JsonEmitter;
 
 import java.io.IOException;
 import java.io.Writer;
@@ -23,7 +24,7 @@ public class ArrayValue extends ArrayList<Value> implements Value {
     }
 
     @Override
-    public void writeJson(JsonWriter writer) throws IOException {
+    public void writeJson(JsonEmitter writer) throws IOException {
         writer.beginObject();
         writer.name("type");
         writer.value(ValueType.ARRAY.getName());
@@ -35,4 +36,13 @@ public class ArrayValue extends ArrayList<Value> implements Value {
         writer.endArray();
         writer.endObject();
     }
+
+    @Override
+    public void writeBinary(BinaryWriter writer) throws IOException {
+        writer.writeEnum(ValueType.ARRAY);
+        writer.writeVarInt(size());
+        for (Value innerValue : this) {
+            innerValue.writeBinary(writer);
+        }
+    }
 }
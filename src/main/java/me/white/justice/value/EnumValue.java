@@ -1,6 +1,7 @@
 package me.white.justice.value;
 
-import com.google.gson.stream.JsonWriter;
+import me.white.justice.BinaryWriter;
+import me.white.justice.JsonEmitter;
 
 import java.io.IOException;
 import java.io.Writer;
@@ -22,7 +23,7 @@ public class EnumValue implements Value {
     }
 
     @Override
-    public void writeJson(JsonWriter writer) throws IOException {
+    public void writeJson(JsonEmitter writer) throws IOException {
         writer.beginObject();
         writer.name("type");
         writer.value(ValueType.ENUM.getName());
@@ -30,4 +31,10 @@ public class EnumValue implements Value {
         writer.value(name);
         writer.endObject();
     }
+
+    @Override
+    public void writeBinary(BinaryWriter writer) throws IOException {
+        writer.writeEnum(ValueType.ENUM);
+        writer.writeString(name);
+    }
 }
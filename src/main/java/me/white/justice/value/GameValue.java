@@ -1,6 +1,7 @@
 package me.white.justice.value;
 
-import com.google.gson.stream.JsonWriter;
+import me.white.justice.BinaryWriter;
+import me.white.justice.JsonEmitter;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
@@ -40,7 +41,7 @@ public class GameValue implements Value {
     }
 
     @Override
-    public void writeJson(JsonWriter writer) throws IOException {
+    public void writeJson(JsonEmitter writer) throws IOException {
         writer.beginObject();
         writer.name("type");
         writer.value(ValueType.GAME.getName());
@@ -54,4 +55,11 @@ public class GameValue implements Value {
         }
         writer.endObject();
     }
+
+    @Override
+    public void writeBinary(BinaryWriter writer) throws IOException {
+        writer.writeEnum(ValueType.GAME);
+        writer.writeString(name);
+        writer.writeString(selector);
+    }
 }
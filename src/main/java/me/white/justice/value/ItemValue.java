@@ -1,7 +1,9 @@
 package me.white.justice.value;
 
-import com.google.gson.stream.JsonWriter;
+import me.white.justice.BinaryWriter;
+import me.white.justice.JsonEmitter;
 import net.querz.nbt.io.*;
+import org.jetbrains.annotations.Nullable;
 import net.querz.nbt.tag.*;
 
 import java.io.IOException;
@@ -10,17 +12,58 @@ import java.lang.reflect.Array;
 import java.util.Base64;
 import java.util.Map;
 
+// equal items of a compilation share one value, so it is never changed once made
+// both forms are filled in lazily, a race at worst computes one of them twice
 public class ItemValue implements Value {
-    private final CompoundTag tag;
+    @Nullable
+    private volatile CompoundTag tag;
+    // base64 of the compressed nbt as found in a module, passed through until the tag itself is needed
+    @Nullable
+    private volatile String serialized;
 
     public ItemValue(CompoundTag tag) {
         this.tag = tag;
+        this.serialized = null;
     }
 
+    public ItemValue(String serialized) {
+        this.tag = null;
+        this.serialized = serialized;
+    }
+
+    // malformed items of a module only surface here, as an IllegalStateException
     public CompoundTag getTag() {
+        CompoundTag tag = this.tag;
+        if (tag == null) {
+            tag = decode(serialized);
+            this.tag = tag;
+        }
         return tag;
     }
 
+    public String getSerialized() throws IOException {
+        String serialized = this.serialized;
+        if (serialized == null) {
+            byte[] bytes = new NBTSerializer(true).toBytes(new NamedTag(null, tag));
+            serialized = Base64.getEncoder().encodeToString(bytes);
+            this.serialized = serialized;
+        }
+        return serialized;
+    }
+
+    private static CompoundTag decode(String serialized) {
+        Tag<?> item;
+        try {
+            item = new NBTDeserializer().fromBytes(Base64.getDecoder().decode(serialized)).getTag();
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalStateException("Incomplete item value");
+        }
+        if (!(item instanceof CompoundTag compound)) {
+            throw new IllegalStateException("Malformed item value");
+        }
+        return compound;
+    }
+
     // since net.querz.nbt does not provide adequate customization
     private static void writeTag(Writer writer, Tag<?> tag) throws IOException {
         switch (tag) {
@@ -82,18 +125,23 @@ public class ItemValue implements Value {
     @Override
     public void write(Writer writer) throws IOException {
         writer.write("item");
-        writeTag(writer, tag);
+        writeTag(writer, getTag());
     }
 
     @Override
-    public void writeJson(JsonWriter writer) throws IOException {
+    public void writeJson(JsonEmitter writer) throws IOException {
         writer.beginObject();
         writer.name("type");
         writer.value(ValueType.ITEM.getName());
-        byte[] bytes = new NBTSerializer(true).toBytes(new NamedTag(null, tag));
-        String serialized = Base64.getEncoder().encodeToString(bytes);
         writer.name("item");
-        writer.value(serialized);
+        writer.value(getSerialized());
         writer.endObject();
     }
+
+    @Override
+    public void writeBinary(BinaryWriter writer) throws IOException {
+        writer.writeEnum(ValueType.ITEM);
+        byte[] bytes = new NBTSerializer(false).toBytes(new NamedTag(null, getTag()));
+        writer.writeBytes(bytes);
+    }
 }
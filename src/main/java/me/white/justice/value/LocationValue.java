@@ -1,6 +1,7 @@
 package me.white.justice.value;
 
-import com.google.gson.stream.JsonWriter;
+import me.white.justice.BinaryWriter;
+import me.white.justice.JsonEmitter;
 
 import java.io.IOException;
 import java.io.Writer;
@@ -62,7 +63,7 @@ public class LocationValue implements Value {
     }
 
     @Override
-    public void writeJson(JsonWriter writer) throws IOException {
+    public void writeJson(JsonEmitter writer) throws IOException {
         writer.beginObject();
         writer.name("type");
         writer.value(ValueType.LOCATION.getName());
@@ -78,4 +79,14 @@ public class LocationValue implements Value {
         writer.value(pitch);
         writer.endObject();
     }
+
+    @Override
+    public void writeBinary(BinaryWriter writer) throws IOException {
+        writer.writeEnum(ValueType.LOCATION);
+        writer.writeDouble(x);
+        writer.writeDouble(y);
+        writer.writeDouble(z);
+        writer.writeDouble(yaw);
+        writer.writeDouble(pitch);
+    }
 }
@@ -1,6 +1,7 @@
 package me.white.justice.value;
 
-import com.google.gson.stream.JsonWriter;
+import me.white.justice.BinaryWriter;
+import me.white.justice.JsonEmitter;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
@@ -44,7 +45,7 @@ public class NumberValue implements Value {
     }
 
     @Override
-    public void writeJson(JsonWriter writer) throws IOException {
+    public void writeJson(JsonEmitter writer) throws IOException {
         writer.beginObject();
         writer.name("type");
         writer.value(ValueType.NUMBER.getName());
@@ -56,4 +57,15 @@ public class NumberValue implements Value {
         }
         writer.endObject();
     }
+
+    @Override
+    public void writeBinary(BinaryWriter writer) throws IOException {
+        writer.writeEnum(ValueType.NUMBER);
+        writer.writeBoolean(isPlaceholder());
+        if (isPlaceholder()) {
+            writer.writeString(placeholder);
+        } else {
+            writer.writeDouble(number);
+        }
+    }
 }
@@ -1,6 +1,7 @@
 package me.white.justice.value;
 
-import com.google.gson.stream.JsonWriter;
+import me.white.justice.BinaryWriter;
+import me.white.justice.JsonEmitter;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
@@ -125,7 +126,7 @@ public class ParticleValue implements Value {
     }
 
     @Override
-    public void writeJson(JsonWriter writer) throws IOException {
+    public void writeJson(JsonEmitter writer) throws IOException {
         writer.beginObject();
         writer.name("type");
         writer.value(ValueType.NUMBER.getName());
@@ -153,4 +154,19 @@ public class ParticleValue implements Value {
         writer.value(size);
         writer.endObject();
     }
+
+    @Override
+    public void writeBinary(BinaryWriter writer) throws IOException {
+        writer.writeEnum(ValueType.PARTICLE);
+        writer.writeString(name);
+        writer.writeString(material);
+        writer.writeDouble(spreadH);
+        writer.writeDouble(spreadV);
+        writer.writeDouble(motionX);
+        writer.writeDouble(motionY);
+        writer.writeDouble(motionZ);
+        writer.writeInt(count);
+        writer.writeInt(color);
+        writer.writeDouble(size);
+    }
 }
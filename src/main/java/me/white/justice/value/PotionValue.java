@@ -1,6 +1,7 @@
 package me.white.justice.value;
 
-import com.google.gson.stream.JsonWriter;
+import me.white.justice.BinaryWriter;
+import me.white.justice.JsonEmitter;
 
 import java.io.IOException;
 import java.io.Writer;
@@ -44,7 +45,7 @@ public class PotionValue implements Value {
     }
 
     @Override
-    public void writeJson(JsonWriter writer) throws IOException {
+    public void writeJson(JsonEmitter writer) throws IOException {
         writer.beginObject();
         writer.name("type");
         writer.value(ValueType.POTION.getName());
@@ -56,4 +57,12 @@ public class PotionValue implements Value {
         writer.value(duration);
         writer.endObject();
     }
+
+    @Override
+    public void writeBinary(BinaryWriter writer) throws IOException {
+        writer.writeEnum(ValueType.POTION);
+        writer.writeString(name);
+        writer.writeInt(amplifier);
+        writer.writeInt(duration);
+    }
 }
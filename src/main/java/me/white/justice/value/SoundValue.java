@@ -1,6 +1,7 @@
 package me.white.justice.value;
 
-import com.google.gson.stream.JsonWriter;
+import me.white.justice.BinaryWriter;
+import me.white.justice.JsonEmitter;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
@@ -79,7 +80,7 @@ public class SoundValue implements Value {
     }
 
     @Override
-    public void writeJson(JsonWriter writer) throws IOException {
+    public void writeJson(JsonEmitter writer) throws IOException {
         writer.beginObject();
         writer.name("type");
         writer.value(ValueType.SOUND.getName());
@@ -99,4 +100,14 @@ public class SoundValue implements Value {
         }
         writer.endObject();
     }
+
+    @Override
+    public void writeBinary(BinaryWriter writer) throws IOException {
+        writer.writeEnum(ValueType.SOUND);
+        writer.writeString(name);
+        writer.writeDouble(volume);
+        writer.writeDouble(pitch);
+        writer.writeString(source);
+        writer.writeString(variant);
+    }
 }
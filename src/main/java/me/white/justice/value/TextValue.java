@@ -1,6 +1,7 @@
 package me.white.justice.value;
 
-import com.google.gson.stream.JsonWriter;
+import me.white.justice.BinaryWriter;
+import me.white.justice.JsonEmitter;
 
 import java.io.IOException;
 import java.io.Writer;
@@ -31,7 +32,7 @@ public class TextValue implements Value {
     }
 
     @Override
-    public void writeJson(JsonWriter writer) throws IOException {
+    public void writeJson(JsonEmitter writer) throws IOException {
         writer.beginObject();
         writer.name("type");
         writer.value(ValueType.TEXT.getName());
@@ -41,4 +42,11 @@ public class TextValue implements Value {
         writer.value(textParsing.getName());
         writer.endObject();
     }
+
+    @Override
+    public void writeBinary(BinaryWriter writer) throws IOException {
+        writer.writeEnum(ValueType.TEXT);
+        writer.writeString(text);
+        writer.writeEnum(textParsing);
+    }
 }
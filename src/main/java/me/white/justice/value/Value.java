@@ -1,6 +1,7 @@
 package me.white.justice.value;
 
-import com.google.gson.stream.JsonWriter;
+import me.white.justice.BinaryWriter;
+import me.white.justice.JsonEmitter;
 import me.white.justice.lexer.Lexer;
 
 import java.io.IOException;
@@ -37,5 +38,7 @@ public interface Value {
 
     void write(Writer writer) throws IOException;
 
-    void writeJson(JsonWriter writer) throws IOException;
+    void writeJson(JsonEmitter writer) throws IOException;
+
+    void writeBinary(BinaryWriter writer) throws IOException;
 }
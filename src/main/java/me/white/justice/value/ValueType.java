@@ -4,86 +4,121 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonPrimitive;
+import me.white.justice.BinaryReader;
 import me.white.justice.Marshal;
 import me.white.justice.MarshalException;
 import me.white.justice.ParsingException;
+import me.white.justice.SymbolTable;
 import me.white.justice.lexer.Lexer;
 import me.white.justice.lexer.Token;
 import me.white.justice.lexer.TokenType;
 import net.querz.nbt.io.NBTDeserializer;
-import net.querz.nbt.io.ParseException;
-import net.querz.nbt.io.SNBTParser;
 import net.querz.nbt.tag.CompoundTag;
 import net.querz.nbt.tag.Tag;
 
 import java.io.IOException;
-import java.util.Base64;
 import java.util.HashSet;
 import java.util.Set;
 
 public enum ValueType {
     NUMBER("number", false) {
         @Override
-        public Value marshal(JsonObject object) {
-            JsonPrimitive primitive = object.get("number").getAsJsonPrimitive();
+        public Value marshal(JsonObject object, SymbolTable symbols) throws MarshalException {
+            JsonPrimitive primitive = Marshal.jsonGet(object, "number").getAsJsonPrimitive();
             if (primitive.isString()) {
                 return new NumberValue(primitive.getAsString());
             }
             return new NumberValue(primitive.getAsDouble());
         }
+
+        @Override
+        public Value read(BinaryReader reader) throws IOException {
+            if (reader.readBoolean()) {
+                return new NumberValue(reader.readString());
+            }
+            return new NumberValue(reader.readDouble());
+        }
     },
     TEXT("text", false) {
         @Override
-        public Value marshal(JsonObject object) throws MarshalException {
-            String text = object.get("text").getAsString();
-            TextParsing parsing = TextParsing.byName(object.get("parsing").getAsString());
+        public Value marshal(JsonObject object, SymbolTable symbols) throws MarshalException {
+            String text = Marshal.jsonGet(object, "text").getAsString();
+            TextParsing parsing = TextParsing.byName(Marshal.jsonGet(object, "parsing").getAsString());
             if (parsing == null) {
                 throw new MarshalException("Invalid text parsing");
             }
             return new TextValue(text, parsing);
         }
+
+        @Override
+        public Value read(BinaryReader reader) throws IOException {
+            String text = reader.readString();
+            return new TextValue(text, reader.readEnum(TextParsing.values()));
+        }
     },
     ARRAY("array", false) {
         @Override
-        public Value marshal(JsonObject object) throws MarshalException {
+        public Value marshal(JsonObject object, SymbolTable symbols) throws MarshalException {
             ArrayValue array = new ArrayValue();
             JsonArray values = Marshal.jsonGet(object, "values").getAsJsonArray();
             for (JsonElement element : values) {
-                Value innerValue = Marshal.marshalValue(element.getAsJsonObject(), false);
+                Value innerValue = Marshal.marshalValue(element.getAsJsonObject(), false, symbols);
                 if (innerValue != null) {
                     array.add(innerValue);
                 }
             }
             return array;
         }
+
+        @Override
+        public Value read(BinaryReader reader) throws IOException {
+            ArrayValue array = new ArrayValue();
+            int size = reader.readSize();
+            for (int i = 0; i < size; ++i) {
+                array.add(reader.readValue());
+            }
+            return array;
+        }
     },
     VARIABLE("variable", false) {
         @Override
-        public Value marshal(JsonObject object) throws MarshalException {
-            String name = Marshal.jsonGet(object, "variable").getAsString();
-            VariableScope scope = VariableScope.byName(object.get("scope").getAsString());
+        public Value marshal(JsonObject object, SymbolTable symbols) throws MarshalException {
+            String name = symbols.intern(Marshal.jsonGet(object, "variable").getAsString());
+            VariableScope scope = VariableScope.byName(Marshal.jsonGet(object, "scope").getAsString());
             if (scope == null) {
                 throw new MarshalException("Invalid variable scope");
             }
             return new VariableValue(name, scope);
         }
+
+        @Override
+        public Value read(BinaryReader reader) throws IOException {
+            String name = reader.readString();
+            return new VariableValue(name, reader.readEnum(VariableScope.values()));
+        }
     },
     GAME("game_value", false) {
         @Override
-        public Value marshal(JsonObject object) {
-            String name = object.get("game_value").getAsString();
-            String selector = object.get("selection").getAsString();
+        public Value marshal(JsonObject object, SymbolTable symbols) throws MarshalException {
+            String name = symbols.intern(Marshal.jsonGet(object, "game_value").getAsString());
+            String selector = Marshal.jsonGet(object, "selection").getAsString();
             if (selector.equals("null")) {
                 return new GameValue(name, null);
             }
             // {"type":"<>"}
-            selector = selector.substring(9, selector.length() - 2);
+            selector = symbols.intern(selector.substring(9, selector.length() - 2));
             return new GameValue(name, selector);
         }
+
+        @Override
+        public Value read(BinaryReader reader) throws IOException {
+            String name = reader.readString();
+            return new GameValue(name, reader.readString());
+        }
     },
     LOCATION("location", true) {
         @Override
-        public Value parse(Lexer lexer) throws ParsingException {
+        public Value parse(Lexer lexer, SymbolTable symbols) throws ParsingException {
             lexer.expect(TokenType.BLOCK_OPEN);
             double x = lexer.expect(TokenType.NUMBER).getNumber();
             lexer.expect(TokenType.COMMA);
@@ -103,18 +138,23 @@ public enum ValueType {
         }
 
         @Override
-        public Value marshal(JsonObject object) {
-            double x = object.get("x").getAsDouble();
-            double y = object.get("y").getAsDouble();
-            double z = object.get("z").getAsDouble();
-            double yaw = object.get("yaw").getAsDouble();
-            double pitch = object.get("pitch").getAsDouble();
+        public Value marshal(JsonObject object, SymbolTable symbols) throws MarshalException {
+            double x = Marshal.jsonGet(object, "x").getAsDouble();
+            double y = Marshal.jsonGet(object, "y").getAsDouble();
+            double z = Marshal.jsonGet(object, "z").getAsDouble();
+            double yaw = Marshal.jsonGet(object, "yaw").getAsDouble();
+            double pitch = Marshal.jsonGet(object, "pitch").getAsDouble();
             return new LocationValue(x, y, z, yaw, pitch);
         }
+
+        @Override
+        public Value read(BinaryReader reader) throws IOException {
+            return new LocationValue(reader.readDouble(), reader.readDouble(), reader.readDouble(), reader.readDouble(), reader.readDouble());
+        }
     },
     VECTOR("vector", true) {
         @Override
-        public Value parse(Lexer lexer) throws ParsingException {
+        public Value parse(Lexer lexer, SymbolTable symbols) throws ParsingException {
             lexer.expect(TokenType.BLOCK_OPEN);
             double x = lexer.expect(TokenType.NUMBER).getNumber();
             lexer.expect(TokenType.COMMA);
@@ -126,59 +166,57 @@ public enum ValueType {
         }
 
         @Override
-        public Value marshal(JsonObject object) {
-            double x = object.get("x").getAsDouble();
-            double y = object.get("y").getAsDouble();
-            double z = object.get("z").getAsDouble();
+        public Value marshal(JsonObject object, SymbolTable symbols) throws MarshalException {
+            double x = Marshal.jsonGet(object, "x").getAsDouble();
+            double y = Marshal.jsonGet(object, "y").getAsDouble();
+            double z = Marshal.jsonGet(object, "z").getAsDouble();
             return new VectorValue(x, y, z);
         }
+
+        @Override
+        public Value read(BinaryReader reader) throws IOException {
+            return new VectorValue(reader.readDouble(), reader.readDouble(), reader.readDouble());
+        }
     },
     ITEM("item", true) {
         @Override
-        public Value parse(Lexer lexer) throws ParsingException {
-            lexer.revert();
-            Tag<?> tag;
-            SNBTParser parser = new SNBTParser(lexer.getBuffer().substring(lexer.getReadPos()));
-            try {
-                tag = parser.parse(Tag.DEFAULT_MAX_DEPTH, true);
-            } catch (ParseException e) {
-                // yes this is what we have to deal with
-                String message = e.getMessage();
-                if (message.contains("<--[HERE]")) {
-                    message = message.substring(0, message.indexOf(" at: "));
+        public Value parse(Lexer lexer, SymbolTable symbols) throws ParsingException {
+            // repeated item data is recognized by its text and shares the value parsed the first time
+            String source = lexer.peekCompound();
+            if (source != null) {
+                ItemValue item = symbols.getItem(source);
+                if (item != null) {
+                    lexer.skipCompound(source);
+                    return item;
                 }
-                lexer.advance(parser.getReadChars() - 1);
-                throw lexer.error(message);
-            }
-            if (!(tag instanceof CompoundTag)) {
-                throw lexer.error("Invalid item data");
             }
-            lexer.advance(parser.getReadChars() - 1);
-            return new ItemValue((CompoundTag)tag);
+            ItemValue item = new ItemValue(lexer.readCompound());
+            return source == null ? item : symbols.internItem(source, item);
         }
 
         @Override
-        public Value marshal(JsonObject object) throws MarshalException {
-            String serialized = object.get("item").getAsString();
+        public Value marshal(JsonObject object, SymbolTable symbols) throws MarshalException {
+            String serialized = Marshal.jsonGet(object, "item").getAsString();
             if (serialized.equals("AAAAAAAAAAA=")) {
                 return null;
             }
-            byte[] bytes = Base64.getDecoder().decode(serialized);
-            Tag<?> item;
-            try {
-                item = new NBTDeserializer().fromBytes(bytes).getTag();
-            } catch (IOException e) {
-                throw new MarshalException("Incomplete item value");
-            }
+            // decoded only once something reads the tag, equal items of a compilation share one value
+            ItemValue item = symbols.getItem(serialized);
+            return item != null ? item : symbols.internItem(serialized, new ItemValue(serialized));
+        }
+
+        @Override
+        public Value read(BinaryReader reader) throws IOException {
+            Tag<?> item = new NBTDeserializer(false).fromBytes(reader.readBytes()).getTag();
             if (!(item instanceof CompoundTag)) {
-                throw new MarshalException("Malformed item value");
+                throw new IOException("Malformed item value");
             }
             return new ItemValue((CompoundTag)item);
         }
     },
     SOUND("sound", true) {
         @Override
-        public Value parse(Lexer lexer) throws ParsingException {
+        public Value parse(Lexer lexer, SymbolTable symbols) throws ParsingException {
             lexer.expect(TokenType.BLOCK_OPEN);
             String name = lexer.expect(TokenType.STRING).getString();
             double volume = 1;
@@ -208,10 +246,10 @@ public enum ValueType {
         }
 
         @Override
-        public Value marshal(JsonObject object) {
-            String name = object.get("sound").getAsString();
-            double pitch = object.get("pitch").getAsDouble();
-            double volume = object.get("volume").getAsDouble();
+        public Value marshal(JsonObject object, SymbolTable symbols) throws MarshalException {
+            String name = Marshal.jsonGet(object, "sound").getAsString();
+            double pitch = Marshal.jsonGet(object, "pitch").getAsDouble();
+            double volume = Marshal.jsonGet(object, "volume").getAsDouble();
             String variant = null;
             String source = null;
             if (object.has("variation")) {
@@ -228,10 +266,20 @@ public enum ValueType {
             }
             return new SoundValue(name, pitch, volume, variant, source);
         }
+
+        @Override
+        public Value read(BinaryReader reader) throws IOException {
+            String name = reader.readString();
+            double volume = reader.readDouble();
+            double pitch = reader.readDouble();
+            String source = reader.readString();
+            String variant = reader.readString();
+            return new SoundValue(name, volume, pitch, source, variant);
+        }
     },
     POTION("potion", true) {
         @Override
-        public Value parse(Lexer lexer) throws ParsingException {
+        public Value parse(Lexer lexer, SymbolTable symbols) throws ParsingException {
             lexer.expect(TokenType.BLOCK_OPEN);
             String name = lexer.expect(TokenType.STRING).getString();
             int amplifier = 0;
@@ -263,16 +311,22 @@ public enum ValueType {
         }
 
         @Override
-        public Value marshal(JsonObject object) {
-            String name = object.get("potion").getAsString();
-            int amplifier = object.get("amplifier").getAsInt();
-            int duration = object.get("duration").getAsInt();
+        public Value marshal(JsonObject object, SymbolTable symbols) throws MarshalException {
+            String name = Marshal.jsonGet(object, "potion").getAsString();
+            int amplifier = Marshal.jsonGet(object, "amplifier").getAsInt();
+            int duration = Marshal.jsonGet(object, "duration").getAsInt();
             return new PotionValue(name, amplifier, duration);
         }
+
+        @Override
+        public Value read(BinaryReader reader) throws IOException {
+            String name = reader.readString();
+            return new PotionValue(name, reader.readInt(), reader.readInt());
+        }
     },
     PARTICLE("particle", true) {
         @Override
-        public Value parse(Lexer lexer) throws ParsingException {
+        public Value parse(Lexer lexer, SymbolTable symbols) throws ParsingException {
             lexer.expect(TokenType.BLOCK_OPEN);
             String name = lexer.expect(TokenType.STRING).getString();
             String material = null;
@@ -323,8 +377,8 @@ public enum ValueType {
         }
 
         @Override
-        public Value marshal(JsonObject object) {
-            String name = object.get("particle_type").getAsString();
+        public Value marshal(JsonObject object, SymbolTable symbols) throws MarshalException {
+            String name = Marshal.jsonGet(object, "particle_type").getAsString();
             String material = null;
             double spreadH = 0;
             double spreadV = 0;
@@ -339,12 +393,12 @@ public enum ValueType {
             }
             if (object.has("first_spread")) {
                 spreadH = object.get("first_spread").getAsDouble();
-                spreadV = object.get("second_spread").getAsDouble();
+                spreadV = Marshal.jsonGet(object, "second_spread").getAsDouble();
             }
             if (object.has("x_motion")) {
                 motionX = object.get("x_motion").getAsDouble();
-                motionY = object.get("y_motion").getAsDouble();
-                motionZ = object.get("z_motion").getAsDouble();
+                motionY = Marshal.jsonGet(object, "y_motion").getAsDouble();
+                motionZ = Marshal.jsonGet(object, "z_motion").getAsDouble();
             }
             if (object.has("count")) {
                 count = object.get("count").getAsInt();
@@ -357,11 +411,31 @@ public enum ValueType {
             }
             return new ParticleValue(name, material, spreadH, spreadV, motionX, motionY, motionZ, count, color, size);
         }
+
+        @Override
+        public Value read(BinaryReader reader) throws IOException {
+            String name = reader.readString();
+            String material = reader.readString();
+            double spreadH = reader.readDouble();
+            double spreadV = reader.readDouble();
+            double motionX = reader.readDouble();
+            double motionY = reader.readDouble();
+            double motionZ = reader.readDouble();
+            int count = reader.readInt();
+            int color = reader.readInt();
+            double size = reader.readDouble();
+            return new ParticleValue(name, material, spreadH, spreadV, motionX, motionY, motionZ, count, color, size);
+        }
     },
     ENUM("enum", false) {
         @Override
-        public Value marshal(JsonObject object) {
-            return new EnumValue(object.get("enum").getAsString());
+        public Value marshal(JsonObject object, SymbolTable symbols) throws MarshalException {
+            return new EnumValue(Marshal.jsonGet(object, "enum").getAsString());
+        }
+
+        @Override
+        public Value read(BinaryReader reader) throws IOException {
+            return new EnumValue(reader.readString());
         }
     };
 
@@ -390,11 +464,15 @@ public enum ValueType {
         return isFactory;
     }
 
-    public Value parse(Lexer lexer) throws ParsingException {
+    public Value parse(Lexer lexer, SymbolTable symbols) throws ParsingException {
+        throw new UnsupportedOperationException();
+    }
+
+    public Value marshal(JsonObject object, SymbolTable symbols) throws MarshalException {
         throw new UnsupportedOperationException();
     }
 
-    public Value marshal(JsonObject object) throws MarshalException {
+    public Value read(BinaryReader reader) throws IOException {
         throw new UnsupportedOperationException();
     }
 }
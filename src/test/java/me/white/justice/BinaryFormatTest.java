@@ -0,0 +1,83 @@
+package me.white.justice;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryFormatTest {
+    @TempDir
+    Path directory;
+
+    private static byte[] write(List<Handler> handlers) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (BinaryWriter writer = new BinaryWriter(output)) {
+            writer.writeHandlers(handlers);
+        }
+        return output.toByteArray();
+    }
+
+    private static List<Handler> read(byte[] bytes) throws IOException {
+        try (BinaryReader reader = new BinaryReader(new ByteArrayInputStream(bytes), bytes.length)) {
+            return reader.readHandlers();
+        }
+    }
+
+    @Test
+    void roundTripKeepsHandlers() throws IOException, ParsingException {
+        List<Handler> handlers = Parser.parseHandlers(TestSources.sample(3), new SymbolTable());
+        assertEquals(TestSources.toJson(handlers), TestSources.toJson(read(write(handlers))));
+    }
+
+    @Test
+    void truncatedModulesFailToRead() throws IOException, ParsingException {
+        byte[] bytes = write(Parser.parseHandlers(TestSources.sample(1), new SymbolTable()));
+        for (int length = 0; length < bytes.length; ++length) {
+            byte[] truncated = Arrays.copyOf(bytes, length);
+            assertThrows(IOException.class, () -> read(truncated), "truncated to " + length);
+        }
+    }
+
+    @Test
+    void sizesPastTheEndFailToRead() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(output);
+        data.writeInt(BinaryWriter.MAGIC);
+        data.write(BinaryWriter.VERSION);
+        // a handler count just below the int range, which must not be allocated
+        data.write(new byte[]{ (byte)0xF0, (byte)0xFF, (byte)0xFF, (byte)0xFF, 0x07 });
+        IOException error = assertThrows(IOException.class, () -> read(output.toByteArray()));
+        assertEquals("Malformed size", error.getMessage());
+    }
+
+    @Test
+    void cacheReturnsStoredHandlers() throws IOException, ParsingException {
+        ModuleCache cache = new ModuleCache(directory);
+        List<Handler> handlers = Parser.parseHandlers(TestSources.sample(2), new SymbolTable());
+        String key = ModuleCache.key(TestSources.sample(2).getBytes());
+        assertNull(cache.load(key));
+        cache.store(key, handlers);
+        List<Handler> loaded = cache.load(key);
+        assertNotNull(loaded);
+        assertEquals(TestSources.toJson(handlers), TestSources.toJson(loaded));
+    }
+
+    @Test
+    void damagedCacheEntriesAreMisses() throws IOException, ParsingException {
+        ModuleCache cache = new ModuleCache(directory);
+        cache.store("key", Parser.parseHandlers(TestSources.sample(1), new SymbolTable()));
+        Path entry = directory.resolve("key.bin");
+        byte[] bytes = Files.readAllBytes(entry);
+        Files.write(entry, Arrays.copyOf(bytes, bytes.length / 2));
+        assertNull(cache.load("key"));
+    }
+}
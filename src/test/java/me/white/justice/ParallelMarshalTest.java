@@ -0,0 +1,84 @@
+package me.white.justice;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelMarshalTest {
+    @TempDir
+    Path directory;
+
+    // particles are not marshalled back yet, so modules are made from the rest of the sample
+    private Path writeModule(String name, int from, int to) throws IOException, ParsingException {
+        String source = TestSources.sample(from, to).lines()
+                .filter(line -> !line.contains("particle{"))
+                .collect(Collectors.joining("\n"));
+        Path file = directory.resolve(name);
+        Files.writeString(file, TestSources.toJson(Parser.parseHandlers(source, new SymbolTable())));
+        return file;
+    }
+
+    private List<Path> writeModules() throws IOException, ParsingException {
+        List<Path> files = new ArrayList<>();
+        // more handlers than are rendered ahead, so the writer has to wait on the window
+        int[] copies = new int[]{ 1, 4, 150, 2 };
+        int from = 0;
+        for (int i = 0; i < copies.length; ++i) {
+            files.add(writeModule("module" + i + ".json", from, from + copies[i]));
+            from += copies[i];
+        }
+        return files;
+    }
+
+    private static String marshalSequential(List<Path> files) throws IOException, MarshalException {
+        StringWriter writer = new StringWriter();
+        SymbolTable symbols = new SymbolTable();
+        for (Path file : files) {
+            try (Reader reader = Files.newBufferedReader(file)) {
+                Marshal.marshal(reader, symbols, writer);
+            }
+        }
+        return writer.toString();
+    }
+
+    private static String marshalParallel(List<Path> files, StringWriter writer) throws IOException, MarshalException {
+        try (ParallelMarshal marshal = new ParallelMarshal(3)) {
+            for (Path file : files) {
+                marshal.marshal(file);
+            }
+            marshal.write(writer);
+        }
+        return writer.toString();
+    }
+
+    @Test
+    void parallelMatchesSequential() throws IOException, ParsingException, MarshalException {
+        List<Path> files = writeModules();
+        String sequential = marshalSequential(files);
+        assertFalse(sequential.isEmpty());
+        assertEquals(sequential, marshalParallel(files, new StringWriter()));
+    }
+
+    @Test
+    void failuresAreReportedInOrderAndStopTheOutput() throws IOException, ParsingException, MarshalException {
+        Path good = writeModule("good.json", 0, 2);
+        Path broken = directory.resolve("broken.json");
+        Files.writeString(broken, "{\"handlers\":[{\"type\":\"function\",\"name\":\"f\",\"operations\":[{\"action\":\"a\",\"values\":[{\"name\":\"i\",\"value\":{\"type\":\"item\"}}]}]}]}");
+        Path missing = directory.resolve("missing.json");
+        StringWriter writer = new StringWriter();
+        MarshalException error = assertThrows(MarshalException.class, () -> marshalParallel(List.of(good, broken, good, missing), writer));
+        assertEquals("In file '" + broken + "':\nMalformed module: No 'item' member\nFile '" + missing + "' does not exist", error.getMessage());
+        // only the modules before the first failure are written
+        assertEquals(marshalSequential(List.of(good)), writer.toString());
+    }
+}
@@ -0,0 +1,98 @@
+package me.white.justice;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelParseTest {
+    @TempDir
+    Path directory;
+
+    // files of different sizes, the last one large enough to be split into chunks
+    private List<String> writeSources(String... extra) throws IOException {
+        List<String> files = new ArrayList<>();
+        int[] copies = new int[]{ 1, 3, 2, 5, 200 };
+        int from = 0;
+        for (int i = 0; i < copies.length; ++i) {
+            Path file = directory.resolve("source" + i + ".ice");
+            Files.writeString(file, TestSources.sample(from, from + copies[i]));
+            files.add(file.toString());
+            from += copies[i];
+        }
+        for (int i = 0; i < extra.length; ++i) {
+            Path file = directory.resolve("extra" + i + ".ice");
+            Files.writeString(file, extra[i]);
+            files.add(file.toString());
+        }
+        return files;
+    }
+
+    private Path parse(String out, List<String> files, String... options) {
+        Path output = directory.resolve(out);
+        List<String> args = new ArrayList<>(List.of("-p", "-o", output.toString()));
+        args.addAll(List.of(options));
+        args.addAll(files);
+        JustIce.main(args.toArray(String[]::new));
+        return output;
+    }
+
+    @Test
+    void parallelFilesMatchSequential() throws IOException {
+        List<String> files = writeSources();
+        Path sequential = parse("sequential.json", files);
+        Path parallel = parse("parallel.json", files, "-j", "3");
+        assertTrue(Files.exists(sequential));
+        assertEquals(Files.readString(sequential), Files.readString(parallel));
+    }
+
+    @Test
+    void parallelCompactFilesMatchSequential() throws IOException {
+        List<String> files = writeSources();
+        Path sequential = parse("sequential.json", files, "-c");
+        Path parallel = parse("parallel.json", files, "-c", "-j", "4");
+        assertTrue(Files.exists(sequential));
+        assertEquals(Files.readString(sequential), Files.readString(parallel));
+    }
+
+    @Test
+    void parallelFailureWritesNothing() throws IOException {
+        List<String> files = writeSources("broken {\n    a(b=);\n}\n");
+        assertFalse(Files.exists(parse("sequential.json", files)));
+        assertFalse(Files.exists(parse("parallel.json", files, "-j", "3")));
+    }
+
+    @Test
+    void chunkedSourceMatchesSequential() throws IOException, ParsingException {
+        // several times the smallest chunk, so the source is split between the threads
+        String source = TestSources.sample(300);
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            List<Handler> chunked = Parser.parseHandlers(source, new SymbolTable(), pool);
+            assertEquals(TestSources.toJson(Parser.parseHandlers(source, new SymbolTable())), TestSources.toJson(chunked));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void chunkedSourceReportsSequentialErrors() {
+        String source = TestSources.sample(300).replace("value=%players_online%", "value=");
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            ParsingException sequential = assertThrows(ParsingException.class, () -> Parser.parseHandlers(source, new SymbolTable()));
+            ParsingException chunked = assertThrows(ParsingException.class, () -> Parser.parseHandlers(source, new SymbolTable(), pool));
+            assertEquals(sequential.getMessage(), chunked.getMessage());
+            assertEquals(sequential.getErrors().stream().map(ParsingException::getMessage).toList(), chunked.getErrors().stream().map(ParsingException::getMessage).toList());
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package me.white.justice;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParsedSourceTest {
+    private static final String[] SNIPPETS = new String[]{ "}", "{", "\"", " ", "x", "\n", ";", "(", ")", "=", "item{ id: stone }", "\r\n", "f { a(); }\n", "event player_join {\n", "`", "'" };
+
+    private static String render(ParsedSource source) throws IOException {
+        StringBuilder builder = new StringBuilder(TestSources.toJson(source.getHandlers()));
+        for (ParsingException error : source.getErrors()) {
+            builder.append('\n').append(error.getMessage());
+        }
+        return builder.toString();
+    }
+
+    @Test
+    void editsMatchFullReparse() throws IOException {
+        Random random = new Random(22);
+        String original = TestSources.sample(12);
+        ParsedSource source = ParsedSource.parse(original, new SymbolTable());
+        for (int i = 0; i < 300; ++i) {
+            CharSequence text = source.getSource();
+            int offset = random.nextInt(text.length() + 1);
+            int removed = random.nextInt(4) == 0 ? random.nextInt(Math.min(200, text.length() - offset) + 1) : 0;
+            String inserted = random.nextInt(3) == 0 ? "" : SNIPPETS[random.nextInt(SNIPPETS.length)];
+            if (random.nextInt(5) == 0) {
+                // moves a piece of the source elsewhere, which often closes or opens handlers
+                int start = random.nextInt(text.length());
+                inserted = text.subSequence(start, Math.min(text.length(), start + random.nextInt(300))).toString();
+            }
+            ParsedSource edited = source.edit(offset, removed, inserted);
+            ParsedSource full = ParsedSource.parse(edited.getSource().toString(), new SymbolTable());
+            assertEquals(render(full), render(edited), "edit " + i + " at " + offset);
+            // starting over now and then keeps errors from piling up
+            source = random.nextInt(10) == 0 ? ParsedSource.parse(original, new SymbolTable()) : edited;
+        }
+    }
+
+    @Test
+    void untouchedHandlersAreReused() {
+        String text = TestSources.sample(4);
+        ParsedSource source = ParsedSource.parse(text, new SymbolTable());
+        int offset = text.indexOf("duration=2", text.indexOf("gift_2")) + "duration=".length();
+        ParsedSource edited = source.edit(offset, 1, "\n30");
+        List<Handler> before = source.getHandlers();
+        List<Handler> after = edited.getHandlers();
+        assertEquals(before.size(), after.size());
+        for (int i = 0; i < before.size(); ++i) {
+            if (before.get(i).getName().equals("gift_2")) {
+                assertNotSame(before.get(i), after.get(i));
+            } else {
+                assertSame(before.get(i), after.get(i), before.get(i).getName());
+            }
+        }
+    }
+
+    @Test
+    void errorsAfterAnEditPointAtTheEditedSource() {
+        String text = TestSources.sample(3);
+        ParsedSource source = ParsedSource.parse(text, new SymbolTable());
+        assertTrue(source.getErrors().isEmpty());
+        int offset = text.indexOf("value=%players_online%", text.indexOf("gift_1")) + "value=".length();
+        ParsedSource edited = source.edit(offset, "%players_online%".length(), "");
+        assertEquals(1, edited.getErrors().size());
+        ParsingException error = edited.getErrors().getFirst();
+        assertEquals(offset, error.getPos());
+        assertEquals(edited.getLines().lineOf(offset) + 1, Integer.parseInt(error.getMessage().substring(1, error.getMessage().indexOf(':'))));
+        // removing the edit again takes the other handlers over unchanged
+        ParsedSource restored = edited.edit(offset, 0, "%players_online%");
+        assertTrue(restored.getErrors().isEmpty());
+        assertEquals(text, restored.getSource().toString());
+    }
+}
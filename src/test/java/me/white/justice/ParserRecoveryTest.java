@@ -0,0 +1,61 @@
+package me.white.justice;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParserRecoveryTest {
+    private static final String SOURCE = """
+            first {
+                a(b=1);
+            }
+
+            broken {
+                a(b=);
+                c(d=2);
+            }
+
+            second {
+                e();
+            }
+
+            unclosed {
+                f(g="text);
+            }
+
+            third {
+                h;
+            }
+            """;
+
+    @Test
+    void everyErrorIsReported() {
+        ParsingException error = assertThrows(ParsingException.class, () -> Parser.parseHandlers(SOURCE, new SymbolTable()));
+        List<ParsingException> errors = error.getErrors();
+        assertEquals(2, errors.size());
+        assertEquals("Expected value", errors.get(0).getReason());
+        assertTrue(errors.get(0).getMessage().startsWith("(6:9)"));
+        assertEquals("Incomplete string", errors.get(1).getReason());
+        assertTrue(errors.get(1).getMessage().startsWith("(15:9)"));
+    }
+
+    @Test
+    void handlersAfterErrorsStillParse() {
+        List<Handler> handlers = ParsedSource.parse(SOURCE, new SymbolTable()).getHandlers();
+        assertEquals(List.of("first", "broken", "second", "unclosed", "third"), handlers.stream().map(Handler::getName).toList());
+        // the operation after the broken one is kept
+        assertEquals("c", handlers.get(1).getOperations().getFirst().getName());
+    }
+
+    @Test
+    void errorsOfLargeSourcesAreAllReported() {
+        String source = TestSources.sample(40).replace("value=%players_online%", "value=");
+        ParsingException error = assertThrows(ParsingException.class, () -> Parser.parseHandlers(source, new SymbolTable()));
+        assertEquals(40, error.getErrors().size());
+        for (int i = 1; i < error.getErrors().size(); ++i) {
+            assertTrue(error.getErrors().get(i - 1).getPos() < error.getErrors().get(i).getPos());
+        }
+    }
+}
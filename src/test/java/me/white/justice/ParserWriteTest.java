@@ -0,0 +1,68 @@
+package me.white.justice;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParserWriteTest {
+    private static ExecutorService pool;
+
+    @BeforeAll
+    static void startPool() {
+        pool = Executors.newFixedThreadPool(3);
+    }
+
+    @AfterAll
+    static void stopPool() {
+        pool.shutdownNow();
+    }
+
+    private static Parser parser(List<Handler> handlers, boolean isCompact) {
+        Parser parser = new Parser();
+        parser.setCompact(isCompact);
+        parser.addHandlers(handlers);
+        return parser;
+    }
+
+    private static void assertBatchedMatchesSequential(List<Handler> handlers, boolean isCompact) throws IOException {
+        ByteArrayOutputStream sequential = new ByteArrayOutputStream();
+        parser(handlers, isCompact).write(sequential);
+        ByteArrayOutputStream batched = new ByteArrayOutputStream();
+        parser(handlers, isCompact).write(Channels.newChannel(batched), pool);
+        assertArrayEquals(sequential.toByteArray(), batched.toByteArray());
+    }
+
+    @Test
+    void batchedMatchesSequential() throws IOException, ParsingException {
+        // more batches than are rendered ahead, and a last batch that is not full
+        List<Handler> handlers = Parser.parseHandlers(TestSources.sample(801), new SymbolTable());
+        assertTrue(handlers.size() % 32 != 0);
+        assertBatchedMatchesSequential(handlers, false);
+        assertBatchedMatchesSequential(handlers, true);
+    }
+
+    @Test
+    void smallModulesMatchSequential() throws IOException, ParsingException {
+        for (List<Handler> handlers : List.of(List.<Handler>of(), Parser.parseHandlers(TestSources.sample(1), new SymbolTable()))) {
+            assertBatchedMatchesSequential(handlers, false);
+            assertBatchedMatchesSequential(handlers, true);
+        }
+    }
+
+    @Test
+    void batchedOutputIsTheModuleJson() throws IOException, ParsingException {
+        List<Handler> handlers = Parser.parseHandlers(TestSources.sample(20), new SymbolTable());
+        ByteArrayOutputStream batched = new ByteArrayOutputStream();
+        parser(handlers, false).write(Channels.newChannel(batched), pool);
+        assertEquals(TestSources.toJson(handlers), batched.toString());
+    }
+}
@@ -0,0 +1,53 @@
+package me.white.justice;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+// sources shared by the tests, built from a sample that uses every kind of value
+final class TestSources {
+    private static final String SAMPLE = load("/sample.ice");
+
+    private TestSources() { }
+
+    private static String load(String name) {
+        try (InputStream input = TestSources.class.getResourceAsStream(name)) {
+            if (input == null) {
+                throw new IllegalStateException("Missing test resource '" + name + "'");
+            }
+            return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // copies of the sample with the '$' in their names replaced by the copy index
+    static String sample(int from, int to) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = from; i < to; ++i) {
+            builder.append(SAMPLE.replace("$", Integer.toString(i)));
+        }
+        return builder.toString();
+    }
+
+    static String sample(int copies) {
+        return sample(0, copies);
+    }
+
+    // the module json of the handlers, which is what tells apart two parses
+    static String toJson(List<Handler> handlers, boolean isCompact) throws IOException {
+        Parser parser = new Parser();
+        parser.setCompact(isCompact);
+        parser.addHandlers(handlers);
+        StringWriter writer = new StringWriter();
+        parser.write(writer);
+        return writer.toString();
+    }
+
+    static String toJson(List<Handler> handlers) throws IOException {
+        return toJson(handlers, false);
+    }
+}